@@ -24,8 +24,16 @@
 
 package mockup.crypto;
 
+import java.nio.ByteBuffer;
+
 public abstract class BlockCipher implements NamedAlgorithm {
 
+	// blocks staged per pass when a buffer is not backed by an array
+	private static final int STAGING_BLOCKS = 16;
+
+	// allocated on the first direct buffer and kept for the next ones
+	private byte[] staging;
+
 	public abstract int getBlocksize();
 
 	public abstract int getKeysize();
@@ -36,4 +44,114 @@ public abstract class BlockCipher implements NamedAlgorithm {
 
 	public abstract void decryptBlock(final byte[] src, int srcOff, byte[] dst, int dstOff);
 
+	public void encryptBlocks(final byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount) {
+		var blocksize = getBlocksize();
+
+		for (var i = 0; i < blockCount; ++i) {
+			encryptBlock(src, srcOff, dst, dstOff);
+			srcOff += blocksize;
+			dstOff += blocksize;
+		}
+	}
+
+	public void decryptBlocks(final byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount) {
+		var blocksize = getBlocksize();
+
+		for (var i = 0; i < blockCount; ++i) {
+			decryptBlock(src, srcOff, dst, dstOff);
+			srcOff += blocksize;
+			dstOff += blocksize;
+		}
+	}
+
+	public void encryptBlock(ByteBuffer src, ByteBuffer dst) {
+		encryptBlocks(src, dst, 1);
+	}
+
+	public void decryptBlock(ByteBuffer src, ByteBuffer dst) {
+		decryptBlocks(src, dst, 1);
+	}
+
+	// consumes blockCount blocks from src and advances both positions
+	public void encryptBlocks(ByteBuffer src, ByteBuffer dst, int blockCount) {
+		processBlocks(true, src, dst, blockCount);
+	}
+
+	// consumes blockCount blocks from src and advances both positions
+	public void decryptBlocks(ByteBuffer src, ByteBuffer dst, int blockCount) {
+		processBlocks(false, src, dst, blockCount);
+	}
+
+	// direct buffers are staged through a small array; ciphers that can work on
+	// the buffers themselves override encryptBuffer / decryptBuffer
+	protected void encryptBuffer(ByteBuffer src, int srcIdx, ByteBuffer dst, int dstIdx, int blockCount) {
+		stageBlocks(true, src, srcIdx, dst, dstIdx, blockCount);
+	}
+
+	protected void decryptBuffer(ByteBuffer src, int srcIdx, ByteBuffer dst, int dstIdx, int blockCount) {
+		stageBlocks(false, src, srcIdx, dst, dstIdx, blockCount);
+	}
+
+	private void processBlocks(boolean encrypt, ByteBuffer src, ByteBuffer dst, int blockCount) {
+		var length = blockCount * getBlocksize();
+
+		if (src.remaining() < length || dst.remaining() < length) {
+			throw new IllegalArgumentException("buffer is too short for " + blockCount + " blocks");
+		}
+
+		var srcIdx = src.position();
+		var dstIdx = dst.position();
+
+		if (src.hasArray() && dst.hasArray()) {
+			var in = src.array();
+			var inOff = src.arrayOffset() + srcIdx;
+			var out = dst.array();
+			var outOff = dst.arrayOffset() + dstIdx;
+
+			if (encrypt) {
+				encryptBlocks(in, inOff, out, outOff, blockCount);
+
+			} else {
+				decryptBlocks(in, inOff, out, outOff, blockCount);
+			}
+
+		} else if (encrypt) {
+			encryptBuffer(src, srcIdx, dst, dstIdx, blockCount);
+
+		} else {
+			decryptBuffer(src, srcIdx, dst, dstIdx, blockCount);
+		}
+
+		src.position(srcIdx + length);
+		dst.position(dstIdx + length);
+	}
+
+	private void stageBlocks(boolean encrypt, ByteBuffer src, int srcIdx, ByteBuffer dst, int dstIdx, int blockCount) {
+		var blocksize = getBlocksize();
+
+		if (staging == null) {
+			staging = new byte[STAGING_BLOCKS * blocksize];
+		}
+
+		while (blockCount > 0) {
+			var count = Math.min(blockCount, STAGING_BLOCKS);
+			var length = count * blocksize;
+
+			src.get(srcIdx, staging, 0, length);
+
+			if (encrypt) {
+				encryptBlocks(staging, 0, staging, 0, count);
+
+			} else {
+				decryptBlocks(staging, 0, staging, 0, count);
+			}
+
+			dst.put(dstIdx, staging, 0, length);
+
+			srcIdx += length;
+			dstIdx += length;
+			blockCount -= count;
+		}
+	}
+
 }
@@ -24,7 +24,13 @@
 
 package mockup.crypto;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import mockup.crypto.util.ByteArray;
 
@@ -43,24 +49,168 @@ public abstract class BufferedBlockCipher implements NamedAlgorithm {
 
 	private Padding padding;
 
+	// keystream of the segment in progress for modes that stream byte by byte, and
+	// the last block of doFinal for the others
+	private byte[] segment;
+
+	// bytes staged per pass when a ByteBuffer is not backed by an array
+	private static final int STAGING_SIZE = 4096;
+	private byte[] staging;
+
+	// bytes mapped per pass over a file channel, a multiple of any block size
+	private static final long MAP_WINDOW = 1L << 30;
+
+	// bytes handled by one fork/join task
+	private static final int PARALLEL_CHUNK = 1 << 16;
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 20;
+
+	// set only when initialized with an expanded key, which hands out a cipher per task
+	protected ExpandedKey expandedKey;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
 	public void init(CipherMode mode, BlockCipher cipher, byte[] mk, byte[] iv) {
+		cipher.init(mk);
+		expandedKey = null;
+		init(mode, cipher, iv);
+	}
+
+	public void init(CipherMode mode, ExpandedKey key, byte[] iv) {
+		expandedKey = key;
+		init(mode, key.newCipher(), iv);
+	}
+
+	private void init(CipherMode mode, BlockCipher cipher, byte[] iv) {
 		this.cipherMode = mode;
 		this.cipher = cipher;
-		cipher.init(mk);
 		blocksize = cipher.getBlocksize();
 		shift = blocksize;
 		buffer = new byte[shift];
+		segment = new byte[blocksize];
 
 		init(iv);
 	}
 
+	// starts a new message under the key already set up, reusing the key schedule and
+	// every array; only the chaining state is reset
+	public void reinit(byte[] iv) {
+		reinit(cipherMode, iv);
+	}
+
+	public void reinit(CipherMode mode, byte[] iv) {
+		if (cipher == null) {
+			throw new IllegalStateException("reinit requires a prior init");
+		}
+
+		this.cipherMode = mode;
+
+		loadIv(iv);
+		reset();
+	}
+
+	// sets the initial state that restoreToInitialState goes back to; modes that
+	// copy iv into the arrays made by init(iv) override this to skip allocation
+	protected void loadIv(byte[] iv) {
+		init(iv);
+	}
+
 	public void setPadding(Padding padding) {
 		this.padding = padding;
 	}
 
+	// modes that support it split inputs of at least threshold bytes into tasks on
+	// the pool; this only takes effect when initialized with an ExpandedKey
+	public void setParallelism(ForkJoinPool pool, int threshold) {
+		if (threshold < PARALLEL_CHUNK) {
+			throw new IllegalArgumentException("threshold should be at least " + PARALLEL_CHUNK);
+		}
+
+		this.pool = pool;
+		this.parallelThreshold = threshold;
+	}
+
+	// src and dst must not overlap unless they are the same range, otherwise a task
+	// could overwrite input of the task before it
+	protected boolean isParallel(final byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		return expandedKey != null && (long) count * shift >= parallelThreshold && (src != dst || srcpos == dstpos);
+	}
+
+	protected interface BlockRange {
+		// processes shifts [from, to) with a cipher owned by the calling task
+		void process(BlockCipher cipher, int from, int to);
+	}
+
+	protected interface ChainedRange {
+		// as BlockRange, with the ciphertext block preceding from as chain
+		void process(BlockCipher cipher, int from, int to, byte[] chain);
+	}
+
+	// runs the range as fork/join tasks of PARALLEL_CHUNK bytes each
+	protected void processParallel(int count, BlockRange range) {
+		pool.invoke(new BlockRangeTask(range, 0, count, getParallelChunk()));
+	}
+
+	// for decryption chained on ciphertext blocks. The chaining block of every task
+	// is copied before any task runs, since a neighbour working in place may
+	// overwrite it; iv holds the first chain and afterwards the last ciphertext block
+	protected void processParallel(final byte[] src, int srcpos, int count, byte[] iv, ChainedRange range) {
+		var chunk = getParallelChunk();
+		var chains = new byte[((count + chunk - 1) / chunk) * blocksize];
+
+		System.arraycopy(iv, 0, chains, 0, blocksize);
+		for (var idx = 1; idx * chunk < count; ++idx) {
+			System.arraycopy(src, srcpos + (idx * chunk - 1) * blocksize, chains, idx * blocksize, blocksize);
+		}
+		System.arraycopy(src, srcpos + (count - 1) * blocksize, iv, 0, blocksize);
+
+		processParallel(count, (cipher, from, to) -> {
+			var chainpos = (from / chunk) * blocksize;
+			range.process(cipher, from, to, Arrays.copyOfRange(chains, chainpos, chainpos + blocksize));
+		});
+	}
+
+	// shifts per task; tasks always start on a multiple of it
+	private int getParallelChunk() {
+		return Math.max(1, PARALLEL_CHUNK / shift);
+	}
+
+	private class BlockRangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final BlockRange range;
+		private final int from;
+		private final int to;
+		private final int leaf;
+
+		BlockRangeTask(BlockRange range, int from, int to, int leaf) {
+			this.range = range;
+			this.from = from;
+			this.to = to;
+			this.leaf = leaf;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= leaf) {
+				range.process(expandedKey.newCipher(), from, to);
+				return;
+			}
+
+			// split on a leaf boundary so every task but the last is a whole chunk
+			var mid = from + ((to - from) / leaf / 2) * leaf;
+			if (mid == from) {
+				mid += leaf;
+			}
+
+			invokeAll(new BlockRangeTask(range, from, mid, leaf), new BlockRangeTask(range, mid, to, leaf));
+		}
+	}
+
 	protected void reset() {
 		offset = 0;
 		Arrays.fill(buffer, (byte) 0);
+		Arrays.fill(segment, (byte) 0);
 
 		restoreToInitialState();
 	}
@@ -69,6 +219,49 @@ public abstract class BufferedBlockCipher implements NamedAlgorithm {
 
 	protected abstract void init(byte[] iv);
 
+	// stream modes return true and implement nextKeystream; without a padding their
+	// update then emits every input byte at once instead of holding back partial shifts
+	protected boolean isStreamMode() {
+		return false;
+	}
+
+	// writes the keystream of the next shift to keystream and advances the mode
+	protected void nextKeystream(byte[] keystream) {
+		throw new UnsupportedOperationException(getName() + " is not a stream mode");
+	}
+
+	// called with the ciphertext of a shift completed byte by byte
+	protected void feedback(final byte[] ciphertext) {
+		// nothing to do
+	}
+
+	private boolean isStreaming() {
+		return padding == null && isStreamMode();
+	}
+
+	// bytes within the current shift; buffer collects their ciphertext for feedback
+	private void streamBytes(final byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		if (offset == 0) {
+			nextKeystream(segment);
+		}
+
+		if (cipherMode == CipherMode.DECRYPT) {
+			System.arraycopy(src, srcpos, buffer, offset, count);
+		}
+
+		ByteArray.xor(dst, dstpos, src, srcpos, segment, offset, count);
+
+		if (cipherMode == CipherMode.ENCRYPT) {
+			System.arraycopy(dst, dstpos, buffer, offset, count);
+		}
+
+		offset += count;
+		if (offset == shift) {
+			feedback(buffer);
+			offset = 0;
+		}
+	}
+
 	public void setShift(int shift) {
 
 		if (shift > blocksize) {
@@ -82,39 +275,205 @@ public abstract class BufferedBlockCipher implements NamedAlgorithm {
 			return null;
 		}
 
-		var msgpos = 0;
-		var dstpos = 0;
-		var length = msg.length;
-
 		var dst = getUpdateBuffer(msg.length);
 
+		process(msg, 0, msg.length, dst, 0);
+
+		return dst;
+	}
+
+	// returns the number of bytes written to out. out may be in: output that runs
+	// ahead of the input still to be read is staged, so in place works in every mode
+	public int update(final byte[] in, int inOff, int length, byte[] out, int outOff) {
+		var outLength = getUpdateLength(length);
+
+		checkOutputSpace(out, outOff, outLength);
+
+		var lead = outOff - inOff + getPendingLength();
+		if (in == out && lead > 0 && outOff < inOff + length && inOff < outOff + outLength) {
+			return processStaged(in, inOff, length, out, outOff, lead);
+		}
+
+		return process(in, inOff, length, out, outOff);
+	}
+
+	protected static void checkOutputSpace(byte[] out, int outOff, int outLength) {
+		var space = out.length - outOff;
+
+		if (space < outLength) {
+			throw new IllegalArgumentException("output buffer is too short: " + space + " < " + outLength);
+		}
+	}
+
+	// bytes taken in by update but not put out yet
+	protected int getPendingLength() {
+		return isStreaming() ? 0 : offset;
+	}
+
+	// the output never gets more than lead bytes ahead of the input consumed, so the
+	// input is copied at least lead bytes beyond the part being processed
+	private int processStaged(final byte[] in, int inOff, int length, byte[] out, int outOff, int lead) {
+		if (lead > STAGING_SIZE) {
+			throw new IllegalArgumentException("output overlaps unread input by " + lead);
+		}
+
+		var staging = getStaging();
+		var written = 0;
+		var consumed = 0;
+		var staged = Math.min(length, staging.length);
+
+		System.arraycopy(in, inOff, staging, 0, staged);
+
+		while (consumed < length) {
+			var count = (consumed + staged == length) ? staged : staged - lead;
+			written += process(staging, 0, count, out, outOff + written);
+			consumed += count;
+
+			var kept = staged - count;
+			var more = Math.min(length - consumed - kept, staging.length - kept);
+
+			System.arraycopy(staging, count, staging, 0, kept);
+			System.arraycopy(in, inOff + consumed + kept, staging, kept, more);
+			staged = kept + more;
+		}
+
+		return written;
+	}
+
+	// consumes the remaining bytes of src and returns the number of bytes put to dst
+	public int update(ByteBuffer src, ByteBuffer dst) {
+		var length = src.remaining();
+		var outLength = getUpdateLength(length);
+
+		if (dst.remaining() < outLength) {
+			throw new IllegalArgumentException("output buffer is too short: " + dst.remaining() + " < " + outLength);
+		}
+
+		if (src.hasArray() && dst.hasArray()) {
+			var written = update(src.array(), src.arrayOffset() + src.position(), length, dst.array(),
+					dst.arrayOffset() + dst.position());
+
+			src.position(src.limit());
+			dst.position(dst.position() + written);
+
+			return written;
+		}
+
+		return process(src, dst);
+	}
+
+	// encrypts or decrypts length bytes of the channel in place, a mapped window at a time
+	public long update(FileChannel channel, long position, long length) throws IOException {
+		if (offset > 0 && isStreaming() == false) {
+			throw new IllegalStateException("in-place update requires no buffered input: " + offset);
+		}
+
+		return update(channel, position, channel, position, length);
+	}
+
+	// returns the number of bytes written to dst from dstPosition on
+	public long update(FileChannel src, long srcPosition, FileChannel dst, long dstPosition, long length)
+			throws IOException {
+		var written = 0L;
+
+		while (length > 0) {
+			var window = (int) Math.min(length, MAP_WINDOW);
+			var outLength = getUpdateLength(window);
+
+			var in = src.map(MapMode.READ_ONLY, srcPosition, window);
+			var out = dst.map(MapMode.READ_WRITE, dstPosition + written, outLength);
+
+			written += update(in, out);
+			srcPosition += window;
+			length -= window;
+		}
+
+		return written;
+	}
+
+	protected int process(ByteBuffer src, ByteBuffer dst) {
+		if (isStreaming()) {
+			return stream(src, dst);
+		}
+
+		var holdLastBlock = (padding != null) && (cipherMode == CipherMode.DECRYPT);
+		var length = src.remaining();
+		var written = 0;
+
 		if (offset > 0) {
 			var gap = Math.min(length, shift - offset);
 
-			System.arraycopy(msg, 0, buffer, offset, gap);
+			src.get(buffer, offset, gap);
+
+			offset += gap;
+			length -= gap;
+
+			if (offset == shift && (length > 0 || holdLastBlock == false)) {
+				updateBlocks(ByteBuffer.wrap(buffer), dst, 1);
+
+				written += shift;
+				offset = 0;
+			}
+		}
+
+		var count = length / shift;
+		if (holdLastBlock && (count > 0) && (length % shift == 0)) {
+			count -= 1;
+		}
+
+		if (count > 0) {
+			updateBlocks(src, dst, count);
+
+			written += count * shift;
+			length -= count * shift;
+		}
+
+		if (length > 0) {
+			src.get(buffer, offset, length);
+			offset += length;
+		}
+
+		return written;
+	}
+
+	protected int process(final byte[] msg, int msgpos, int length, byte[] dst, int dstpos) {
+		if (isStreaming()) {
+			return stream(msg, msgpos, length, dst, dstpos);
+		}
+
+		var holdLastBlock = (padding != null) && (cipherMode == CipherMode.DECRYPT);
+		var written = 0;
+
+		if (offset > 0) {
+			var gap = Math.min(length, shift - offset);
+
+			System.arraycopy(msg, msgpos, buffer, offset, gap);
 
 			msgpos += gap;
 			offset += gap;
 			length -= gap;
 
-			if (offset == shift) {
-				updateBlock(buffer, 0, dst, 0);
+			// a full block is kept back for unpadding unless more input follows
+			if (offset == shift && (length > 0 || holdLastBlock == false)) {
+				updateBlock(buffer, 0, dst, dstpos);
 
 				dstpos += shift;
+				written += shift;
 				offset = 0;
 			}
 		}
 
-		while (length >= shift) {
-			if ((padding != null) && (cipherMode == CipherMode.DECRYPT) && (length == shift)) {
-				break;
-			}
+		var count = length / shift;
+		if (holdLastBlock && (count > 0) && (length % shift == 0)) {
+			count -= 1;
+		}
 
-			updateBlock(msg, msgpos, dst, dstpos);
+		if (count > 0) {
+			updateBlocks(msg, msgpos, dst, dstpos, count);
 
-			msgpos += shift;
-			dstpos += shift;
-			length -= shift;
+			msgpos += count * shift;
+			written += count * shift;
+			length -= count * shift;
 		}
 
 		if (length > 0) {
@@ -122,72 +481,225 @@ public abstract class BufferedBlockCipher implements NamedAlgorithm {
 			offset += length;
 		}
 
-		return dst;
+		return written;
+	}
+
+	// finishes the shift in progress, then whole shifts, then starts a new one with the rest
+	private int stream(final byte[] msg, int msgpos, int length, byte[] dst, int dstpos) {
+		var head = offset > 0 ? Math.min(length, shift - offset) : 0;
+		if (head > 0) {
+			streamBytes(msg, msgpos, dst, dstpos, head);
+		}
+
+		var count = (length - head) / shift;
+		if (count > 0) {
+			updateBlocks(msg, msgpos + head, dst, dstpos + head, count);
+		}
+
+		var done = head + count * shift;
+		if (done < length) {
+			streamBytes(msg, msgpos + done, dst, dstpos + done, length - done);
+		}
+
+		return length;
+	}
+
+	private int stream(ByteBuffer src, ByteBuffer dst) {
+		var length = src.remaining();
+
+		var head = offset > 0 ? Math.min(length, shift - offset) : 0;
+		if (head > 0) {
+			streamBytes(src, dst, head);
+		}
+
+		var count = (length - head) / shift;
+		if (count > 0) {
+			updateBlocks(src, dst, count);
+		}
+
+		if (src.hasRemaining()) {
+			streamBytes(src, dst, src.remaining());
+		}
+
+		return length;
+	}
+
+	private void streamBytes(ByteBuffer src, ByteBuffer dst, int count) {
+		var staging = getStaging();
+
+		src.get(staging, 0, count);
+		streamBytes(staging, 0, staging, 0, count);
+		dst.put(staging, 0, count);
+	}
+
+	private byte[] getStaging() {
+		if (staging == null) {
+			staging = new byte[STAGING_SIZE * 2];
+		}
+
+		return staging;
 	}
 
 	public byte[] getUpdateBuffer(int length) {
+		var outLength = getUpdateLength(length);
+
+		return outLength == 0 ? null : new byte[outLength];
+	}
+
+	protected int getUpdateLength(int length) {
+		if (isStreaming()) {
+			return length;
+		}
 
 		var count = length + offset;
+		var blocks = count / shift;
 
-		if (count < shift) {
-			return null;
+		if (padding != null && cipherMode == CipherMode.DECRYPT && blocks > 0 && count % shift == 0) {
+			blocks -= 1;
 		}
 
-		if (padding != null && cipherMode == CipherMode.DECRYPT) {
-			return new byte[count - shift];
+		return blocks * shift;
+	}
+
+	// an upper bound of the bytes update and doFinal put out for length more bytes
+	public int getOutputSize(int length) {
+		if (isStreaming()) {
+			return length;
 		}
 
-		return new byte[count - (count % shift)];
+		var total = offset + length;
+		if (padding != null && cipherMode == CipherMode.ENCRYPT) {
+			return padding.getPaddedLength(total);
+		}
+
+		return total;
 	}
 
 	public abstract void updateBlock(final byte[] src, int srcpos, byte[] dst, int dstpos);
 
+	public void updateBlocks(final byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		for (var i = 0; i < count; ++i) {
+			updateBlock(src, srcpos, dst, dstpos);
+			srcpos += shift;
+			dstpos += shift;
+		}
+	}
+
+	// consumes count shifts from src and advances both positions; modes that can
+	// work on direct buffers themselves override this instead of staging
+	public void updateBlocks(ByteBuffer src, ByteBuffer dst, int count) {
+		var length = count * shift;
+
+		if (src.hasArray() && dst.hasArray()) {
+			updateBlocks(src.array(), src.arrayOffset() + src.position(), dst.array(),
+					dst.arrayOffset() + dst.position(), count);
+
+			src.position(src.position() + length);
+			dst.position(dst.position() + length);
+			return;
+		}
+
+		// separate halves, since feedback modes may not run in place
+		var staging = getStaging();
+
+		var chunkCount = STAGING_SIZE / shift;
+		while (count > 0) {
+			var chunk = Math.min(count, chunkCount);
+			var chunkLength = chunk * shift;
+
+			src.get(staging, 0, chunkLength);
+			updateBlocks(staging, 0, staging, STAGING_SIZE, chunk);
+			dst.put(staging, STAGING_SIZE, chunkLength);
+
+			count -= chunk;
+		}
+	}
+
 	public byte[] doFinal(final byte[] msg) {
-		var head = update(msg);
-		var tail = doFinal();
+		var length = msg == null ? 0 : msg.length;
+		var dst = new byte[getOutputSize(length)];
+
+		var written = length == 0 ? 0 : update(msg, 0, length, dst, 0);
+		written += doFinal(dst, written);
+
+		return written == dst.length ? dst : Arrays.copyOf(dst, written);
+	}
+
+	// consumes the remaining bytes of src and returns the number of bytes put to dst
+	public int doFinal(ByteBuffer src, ByteBuffer dst) {
+		var written = update(src, dst);
+		var staging = getStaging();
+		var tail = doFinal(staging, 0);
+
+		if (dst.remaining() < tail) {
+			throw new IllegalArgumentException("output buffer is too short: " + dst.remaining() + " < " + tail);
+		}
 
-		return ByteArray.merge(head, tail);
+		dst.put(staging, 0, tail);
+
+		return written + tail;
 	}
 
 	public byte[] doFinal() {
-		return padding == null ? doFinalWithoutPadding() : doFinalWithPadding();
+		var dst = new byte[getOutputSize(0)];
+		var written = doFinal(dst, 0);
+
+		if (written == 0) {
+			return null;
+		}
+
+		return written == dst.length ? dst : Arrays.copyOf(dst, written);
 	}
 
-	private byte[] doFinalWithPadding() {
-		byte[] dst = null;
+	// returns the number of bytes written to out, at most getOutputSize(0)
+	public int doFinal(byte[] out, int outOff) {
+		checkOutputSpace(out, outOff, getOutputSize(0));
 
-		if (cipherMode == CipherMode.ENCRYPT) {
-			var padded = padding.pad(buffer, offset);
-			dst = new byte[padded.length];
-			updateBlock(padded, 0, dst, 0);
-			// cipher.decryptBlock(padded, 0, dst, 0);
+		// a bad padding leaves the cipher ready for the next message
+		try {
+			if (isStreaming()) {
+				return 0;
+			}
 
-		} else {
-			var padded = new byte[blocksize];
-			updateBlock(buffer, 0, padded, 0);
-			// cipher.decryptBlock(buffer, 0, padded, 0);
-			dst = padding.unpad(padded);
+			return padding == null ? doFinalWithoutPadding(out, outOff) : doFinalWithPadding(out, outOff);
+
+		} finally {
+			reset();
 		}
+	}
 
-		reset();
+	private int doFinalWithPadding(byte[] out, int outOff) {
+		if (cipherMode == CipherMode.ENCRYPT) {
+			System.arraycopy(buffer, 0, segment, 0, offset);
+			var length = padding.pad(segment, 0, offset);
+			if (length > 0) {
+				updateBlock(segment, 0, out, outOff);
+			}
 
-		return dst;
-	}
+			return length;
+		}
 
-	private byte[] doFinalWithoutPadding() {
-		byte[] tail = null;
+		// no block at all is only valid for a padding that adds nothing to empty input
+		if (offset == 0) {
+			return padding.unpad(segment, 0, 0);
+		}
 
-		if (offset > 0) {
-			var tmp = new byte[blocksize];
-			updateBlock(buffer, 0, tmp, 0);
+		updateBlock(buffer, 0, segment, 0);
+		var length = padding.unpad(segment, 0, blocksize);
+		System.arraycopy(segment, 0, out, outOff, length);
 
-			tail = Arrays.copyOfRange(tmp, 0, offset);
-			offset = 0;
+		return length;
+	}
+
+	private int doFinalWithoutPadding(byte[] out, int outOff) {
+		if (offset == 0) {
+			return 0;
 		}
 
-		reset();
+		updateBlock(buffer, 0, segment, 0);
+		System.arraycopy(segment, 0, out, outOff, offset);
 
-		return tail;
+		return offset;
 	}
 
 }
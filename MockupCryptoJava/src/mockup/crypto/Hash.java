@@ -24,10 +24,25 @@
 
 package mockup.crypto;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
 import mockup.crypto.hash.Sha256;
 
 public abstract class Hash implements NamedAlgorithm {
-	
+
+	// bytes staged per pass when a buffer is not backed by an array
+	private static final int STAGING_SIZE = 4096;
+
+	// allocated on the first direct buffer and kept for the next ones
+	private byte[] staging;
+
+	// bytes mapped per pass over a file channel
+	private static final long MAP_WINDOW = 1L << 30;
+
 	public abstract int getBlockSize();
 
 	public abstract int getOutputLength();
@@ -36,6 +51,41 @@ public abstract class Hash implements NamedAlgorithm {
 
 	public abstract void update(byte[] msg);
 
+	public void update(byte[] msg, int offset, int length) {
+		update(Arrays.copyOfRange(msg, offset, offset + length));
+	}
+
+	// consumes the remaining bytes of msg
+	public void update(ByteBuffer msg) {
+		if (msg.hasArray()) {
+			update(msg.array(), msg.arrayOffset() + msg.position(), msg.remaining());
+			msg.position(msg.limit());
+			return;
+		}
+
+		if (staging == null) {
+			staging = new byte[STAGING_SIZE];
+		}
+
+		while (msg.hasRemaining()) {
+			var length = Math.min(msg.remaining(), staging.length);
+			msg.get(staging, 0, length);
+			update(staging, 0, length);
+		}
+	}
+
+	// hashes length bytes of the channel, a mapped window at a time
+	public void update(FileChannel channel, long position, long length) throws IOException {
+		while (length > 0) {
+			var window = Math.min(length, MAP_WINDOW);
+
+			update(channel.map(MapMode.READ_ONLY, position, window));
+
+			position += window;
+			length -= window;
+		}
+	}
+
 	public abstract byte[] doFinal();
 
 	public byte[] doFinal(byte[] msg) {
@@ -43,6 +93,16 @@ public abstract class Hash implements NamedAlgorithm {
 		return doFinal();
 	}
 
+	// a separate hash in the same running state, so a common prefix is hashed only once
+	public Hash copy() {
+		throw new UnsupportedOperationException(getName() + " cannot copy its state");
+	}
+
+	// takes over the running state of source, a copy made by the same kind of hash
+	public void restore(Hash source) {
+		throw new UnsupportedOperationException(getName() + " cannot restore a state");
+	}
+
 	public static Hash getInstance(String name) {
 		name = name.toUpperCase();
 
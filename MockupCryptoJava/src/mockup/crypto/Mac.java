@@ -0,0 +1,85 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto;
+
+import mockup.crypto.util.ByteArray;
+
+/**
+ * Message authentication code
+ *
+ * doFinal writes the tag and resets, so the same key goes on to the next
+ * message. verify compares tags in time that does not depend on where they
+ * differ.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public abstract class Mac implements NamedAlgorithm {
+
+	private byte[] computed;
+
+	public abstract int getOutputLength();
+
+	public abstract void reset();
+
+	public void update(final byte[] msg) {
+		update(msg, 0, msg.length);
+	}
+
+	public abstract void update(final byte[] msg, int offset, int length);
+
+	// returns the tag length
+	public abstract int doFinal(byte[] out, int outOff);
+
+	public byte[] doFinal() {
+		var tag = new byte[getOutputLength()];
+		doFinal(tag, 0);
+		return tag;
+	}
+
+	public byte[] doFinal(final byte[] msg) {
+		update(msg);
+		return doFinal();
+	}
+
+	public boolean verify(final byte[] tag) {
+		return verify(tag, 0, tag.length);
+	}
+
+	public boolean verify(final byte[] tag, int offset, int length) {
+		if (computed == null || computed.length != getOutputLength()) {
+			computed = new byte[getOutputLength()];
+		}
+
+		doFinal(computed, 0);
+
+		// the tag length is public, only the bytes are compared in constant time
+		if (length != computed.length) {
+			return false;
+		}
+
+		return ByteArray.equalsConstantTime(computed, 0, tag, offset, length);
+	}
+}
@@ -24,8 +24,27 @@
 
 package mockup.crypto;
 
+import java.util.Arrays;
+
+import mockup.crypto.padding.InvalidPaddingException;
+
+/**
+ * Block padding
+ *
+ * Schemes pad in place and find the data length of padded input with
+ * tryUnpad, which returns INVALID instead of throwing and reads the last
+ * block in time that does not depend on its contents, so a decryption endpoint
+ * can reject garbage cheaply and without a padding oracle from timing. Every
+ * scheme adds 1 to blocksize bytes, except ZeroPadding, which leaves aligned
+ * input as it is; getPaddedLength tells the two apart.
+ *
+ * @author ilwoong.jeong
+ *
+ */
 public abstract class Padding implements NamedAlgorithm {
 
+	public static final int INVALID = -1;
+
 	protected int blocksize;
 
 	public Padding(int blocksize) {
@@ -35,9 +54,55 @@ public abstract class Padding implements NamedAlgorithm {
 	public byte[] pad(byte[] in) {
 		return pad(in, in.length);
 	}
-	
-	public abstract byte[] pad(byte[] in, int length);
 
-	public abstract byte[] unpad(byte[] in);
+	// the length that pad makes of length bytes
+	public int getPaddedLength(int length) {
+		return (length / blocksize + 1) * blocksize;
+	}
+
+	public byte[] pad(byte[] in, int length) {
+		var padded = new byte[getPaddedLength(length)];
+		System.arraycopy(in, 0, padded, 0, length);
+		pad(padded, 0, length);
 
+		return padded;
+	}
+
+	public byte[] unpad(byte[] in) {
+		return Arrays.copyOf(in, unpad(in, 0, in.length));
+	}
+
+	// pads length bytes at offset up to a whole block in place and returns the padded
+	// length; block must have room for it
+	public abstract int pad(byte[] block, int offset, int length);
+
+	// returns the length of the padded data at offset without its padding
+	public int unpad(byte[] in, int offset, int length) {
+		var dataLength = tryUnpad(in, offset, length);
+
+		if (dataLength == INVALID) {
+			throw new InvalidPaddingException();
+		}
+
+		return dataLength;
+	}
+
+	// as unpad, but returns INVALID for a malformed padding
+	public abstract int tryUnpad(final byte[] in, int offset, int length);
+
+	// bytes of the last block that tryUnpad reads
+	protected int getSpan(int length) {
+		return Math.min(length, blocksize);
+	}
+
+	// -1 if value is zero, 0 otherwise, without a branch
+	protected static int zeroMask(int value) {
+		return ((value - 1) >> 31) & (~value >> 31);
+	}
+
+	// dataLength when bad is 0, INVALID otherwise
+	protected static int select(int dataLength, int bad) {
+		var mask = zeroMask(bad);
+		return (dataLength & mask) | (INVALID & ~mask);
+	}
 }
@@ -31,10 +31,12 @@ import mockup.crypto.BlockCipher;
 public class Aes extends BlockCipher implements AesConstants {
 
 	private static final int BLOCKSIZE = 16;
+	private static final int INTERLEAVE = 4;
 	private int keysize;
 	private int rounds;
 	private byte[] rks;
-	private byte[] block = new byte[BLOCKSIZE];
+	private byte[] drks;
+	private byte[] block = new byte[INTERLEAVE * BLOCKSIZE];
 
 	@Override
 	public String getName() {
@@ -54,6 +56,7 @@ public class Aes extends BlockCipher implements AesConstants {
 	@Override
 	public void init(byte[] mk) {
 		rks = null;
+		drks = null;
 		keysize = mk.length;
 
 		switch (keysize) {
@@ -175,170 +178,237 @@ public class Aes extends BlockCipher implements AesConstants {
 	@Override
 	public void encryptBlock(final byte[] src, int srcOff, byte[] dst, int dstOff) {
 		System.arraycopy(src, srcOff, block, 0, BLOCKSIZE);
-		transposeBlock();
+		encrypt(BLOCKSIZE);
+		System.arraycopy(block, 0, dst, dstOff, BLOCKSIZE);
+	}
+
+	@Override
+	public void encryptBlocks(final byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount) {
+		while (blockCount > 0) {
+			var length = Math.min(blockCount, INTERLEAVE) * BLOCKSIZE;
+
+			System.arraycopy(src, srcOff, block, 0, length);
+			encrypt(length);
+			System.arraycopy(block, 0, dst, dstOff, length);
+
+			srcOff += length;
+			dstOff += length;
+			blockCount -= length / BLOCKSIZE;
+		}
+	}
+
+	// every step is applied to all blocks in the scratch buffer before the next one
+	private void encrypt(int length) {
+		transposeBlock(length);
 
 		var ridx = 0;
-		addRoundKey(ridx);
+		addRoundKey(length, rks, ridx);
 		ridx += 16;
 
 		for (int i = 0; i < rounds - 1; ++i) {
-			encryptRound(ridx);
+			encryptRound(length, ridx);
 			ridx += 16;
 		}
-		encryptLastRound(ridx);
+		encryptLastRound(length, ridx);
 
-		transposeBlock();
-		System.arraycopy(block, 0, dst, dstOff, BLOCKSIZE);
+		transposeBlock(length);
 	}
 
-	private void encryptRound(int ridx) {
-		shiftRows();
-		subBytesAndMixColumns();
-		addRoundKey(ridx);
+	private void encryptRound(int length, int ridx) {
+		shiftRows(length);
+		subBytesAndMixColumns(length);
+		addRoundKey(length, rks, ridx);
 	}
 
-	private void encryptLastRound(int ridx) {
-		subBytes();
-		shiftRows();
-		addRoundKey(ridx);
+	private void encryptLastRound(int length, int ridx) {
+		subBytes(length);
+		shiftRows(length);
+		addRoundKey(length, rks, ridx);
 	}
 
-	private void addRoundKey(int ridx) {
-		block[0] ^= rks[ridx + 0];
-		block[1] ^= rks[ridx + 4];
-		block[2] ^= rks[ridx + 8];
-		block[3] ^= rks[ridx + 12];
-
-		block[4] ^= rks[ridx + 1];
-		block[5] ^= rks[ridx + 5];
-		block[6] ^= rks[ridx + 9];
-		block[7] ^= rks[ridx + 13];
-
-		block[8] ^= rks[ridx + 2];
-		block[9] ^= rks[ridx + 6];
-		block[10] ^= rks[ridx + 10];
-		block[11] ^= rks[ridx + 14];
-
-		block[12] ^= rks[ridx + 3];
-		block[13] ^= rks[ridx + 7];
-		block[14] ^= rks[ridx + 11];
-		block[15] ^= rks[ridx + 15];
+	private void addRoundKey(int length, byte[] keys, int ridx) {
+		for (var off = 0; off < length; off += BLOCKSIZE) {
+			block[off + 0] ^= keys[ridx + 0];
+			block[off + 1] ^= keys[ridx + 4];
+			block[off + 2] ^= keys[ridx + 8];
+			block[off + 3] ^= keys[ridx + 12];
+
+			block[off + 4] ^= keys[ridx + 1];
+			block[off + 5] ^= keys[ridx + 5];
+			block[off + 6] ^= keys[ridx + 9];
+			block[off + 7] ^= keys[ridx + 13];
+
+			block[off + 8] ^= keys[ridx + 2];
+			block[off + 9] ^= keys[ridx + 6];
+			block[off + 10] ^= keys[ridx + 10];
+			block[off + 11] ^= keys[ridx + 14];
+
+			block[off + 12] ^= keys[ridx + 3];
+			block[off + 13] ^= keys[ridx + 7];
+			block[off + 14] ^= keys[ridx + 11];
+			block[off + 15] ^= keys[ridx + 15];
+		}
 	}
 
-	private void subBytes() {
-		for (var i = 0; i < block.length; ++i) {
+	private void subBytes(int length) {
+		for (var i = 0; i < length; ++i) {
 			block[i] = SBOX[block[i] & 0xff];
 		}
 	}
 
-	private void shiftRows() {
-		var tmp = block[4];
-		block[4] = block[5];
-		block[5] = block[6];
-		block[6] = block[7];
-		block[7] = tmp;
-
-		swapBlockElement(8, 10);
-		swapBlockElement(9, 11);
-
-		tmp = block[15];
-		block[15] = block[14];
-		block[14] = block[13];
-		block[13] = block[12];
-		block[12] = tmp;
+	private void shiftRows(int length) {
+		for (var off = 0; off < length; off += BLOCKSIZE) {
+			var tmp = block[off + 4];
+			block[off + 4] = block[off + 5];
+			block[off + 5] = block[off + 6];
+			block[off + 6] = block[off + 7];
+			block[off + 7] = tmp;
+
+			swapBlockElement(off + 8, off + 10);
+			swapBlockElement(off + 9, off + 11);
+
+			tmp = block[off + 15];
+			block[off + 15] = block[off + 14];
+			block[off + 14] = block[off + 13];
+			block[off + 13] = block[off + 12];
+			block[off + 12] = tmp;
+		}
 	}
 
-	private void subBytesAndMixColumns() {
-		for (var i = 0; i < 4; ++i) {
-			var value = SMC0[block[i] & 0xff] ^ SMC1[block[i + 4] & 0xff];
-			value ^= SMC2[block[i + 8] & 0xff] ^ SMC3[block[i + 12] & 0xff];
+	private void subBytesAndMixColumns(int length) {
+		for (var off = 0; off < length; off += BLOCKSIZE) {
+			for (var i = 0; i < 4; ++i) {
+				var value = SMC0[block[off + i] & 0xff] ^ SMC1[block[off + i + 4] & 0xff];
+				value ^= SMC2[block[off + i + 8] & 0xff] ^ SMC3[block[off + i + 12] & 0xff];
 
-			block[i + 0] = (byte) ((value >> 24) & 0xff);
-			block[i + 4] = (byte) ((value >> 16) & 0xff);
-			block[i + 8] = (byte) ((value >> 8) & 0xff);
-			block[i + 12] = (byte) ((value) & 0xff);
+				block[off + i + 0] = (byte) ((value >> 24) & 0xff);
+				block[off + i + 4] = (byte) ((value >> 16) & 0xff);
+				block[off + i + 8] = (byte) ((value >> 8) & 0xff);
+				block[off + i + 12] = (byte) ((value) & 0xff);
+			}
 		}
 	}
 
 	@Override
 	public void decryptBlock(final byte[] src, int srcOff, byte[] dst, int dstOff) {
 		System.arraycopy(src, srcOff, block, 0, BLOCKSIZE);
-		transposeBlock();
+		decrypt(BLOCKSIZE);
+		System.arraycopy(block, 0, dst, dstOff, BLOCKSIZE);
+	}
+
+	@Override
+	public void decryptBlocks(final byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount) {
+		while (blockCount > 0) {
+			var length = Math.min(blockCount, INTERLEAVE) * BLOCKSIZE;
+
+			System.arraycopy(src, srcOff, block, 0, length);
+			decrypt(length);
+			System.arraycopy(block, 0, dst, dstOff, length);
+
+			srcOff += length;
+			dstOff += length;
+			blockCount -= length / BLOCKSIZE;
+		}
+	}
+
+	// every step is applied to all blocks in the scratch buffer before the next one
+	private void decrypt(int length) {
+		if (drks == null) {
+			drks = invertRoundKeys();
+		}
+
+		transposeBlock(length);
 
 		var ridx = BLOCKSIZE * rounds;
-		addRoundKey(ridx);
+		addRoundKey(length, drks, ridx);
 		ridx -= 16;
 
 		for (int i = 0; i < rounds - 1; ++i) {
-			decryptRound(ridx);
+			decryptRound(length, ridx);
 			ridx -= 16;
 		}
-		decryptLastRound(ridx);
+		decryptLastRound(length, ridx);
 
-		transposeBlock();
-		System.arraycopy(block, 0, dst, dstOff, BLOCKSIZE);
+		transposeBlock(length);
 	}
 
-	private void decryptRound(int ridx) {
-		inverseShiftRows();
-		inverseSubBytes();
-		addRoundKey(ridx);
-		inverseMixColumns();
+	private void decryptRound(int length, int ridx) {
+		inverseShiftRows(length);
+		inverseSubBytesAndMixColumns(length);
+		addRoundKey(length, drks, ridx);
 	}
 
-	private void decryptLastRound(int ridx) {
-		inverseSubBytes();
-		inverseShiftRows();
-		addRoundKey(ridx);
+	private void decryptLastRound(int length, int ridx) {
+		inverseSubBytes(length);
+		inverseShiftRows(length);
+		addRoundKey(length, drks, ridx);
 	}
 
-	private void inverseSubBytes() {
-		for (var i = 0; i < block.length; ++i) {
-			block[i] = SINV[block[i] & 0xff];
+	// round keys of the equivalent inverse cipher, InvMixColumns applied to the inner rounds
+	private byte[] invertRoundKeys() {
+		var dks = rks.clone();
+
+		for (var i = BLOCKSIZE; i < rounds * BLOCKSIZE; i += 4) {
+			var value = ISMC0[SBOX[rks[i] & 0xff] & 0xff] ^ ISMC1[SBOX[rks[i + 1] & 0xff] & 0xff];
+			value ^= ISMC2[SBOX[rks[i + 2] & 0xff] & 0xff] ^ ISMC3[SBOX[rks[i + 3] & 0xff] & 0xff];
+
+			dks[i + 0] = (byte) ((value >> 24) & 0xff);
+			dks[i + 1] = (byte) ((value >> 16) & 0xff);
+			dks[i + 2] = (byte) ((value >> 8) & 0xff);
+			dks[i + 3] = (byte) ((value) & 0xff);
 		}
+
+		return dks;
 	}
 
-	private void inverseShiftRows() {
-		var tmp = block[7];
-		block[7] = block[6];
-		block[6] = block[5];
-		block[5] = block[4];
-		block[4] = tmp;
-
-		swapBlockElement(8, 10);
-		swapBlockElement(9, 11);
-
-		tmp = block[12];
-		block[12] = block[13];
-		block[13] = block[14];
-		block[14] = block[15];
-		block[15] = tmp;
+	private void inverseSubBytes(int length) {
+		for (var i = 0; i < length; ++i) {
+			block[i] = SINV[block[i] & 0xff];
+		}
 	}
 
-	private void inverseMixColumns() {
-		subBytes();
-		inverseSubBytesAndMixColumns();
+	private void inverseShiftRows(int length) {
+		for (var off = 0; off < length; off += BLOCKSIZE) {
+			var tmp = block[off + 7];
+			block[off + 7] = block[off + 6];
+			block[off + 6] = block[off + 5];
+			block[off + 5] = block[off + 4];
+			block[off + 4] = tmp;
+
+			swapBlockElement(off + 8, off + 10);
+			swapBlockElement(off + 9, off + 11);
+
+			tmp = block[off + 12];
+			block[off + 12] = block[off + 13];
+			block[off + 13] = block[off + 14];
+			block[off + 14] = block[off + 15];
+			block[off + 15] = tmp;
+		}
 	}
 
-	private void inverseSubBytesAndMixColumns() {
-		for (int i = 0; i < 4; ++i) {
-			var value = ISMC0[block[i] & 0xff] ^ ISMC1[block[i + 4] & 0xff];
-			value ^= ISMC2[block[i + 8] & 0xff] ^ ISMC3[block[i + 12] & 0xff];
+	private void inverseSubBytesAndMixColumns(int length) {
+		for (var off = 0; off < length; off += BLOCKSIZE) {
+			for (int i = 0; i < 4; ++i) {
+				var value = ISMC0[block[off + i] & 0xff] ^ ISMC1[block[off + i + 4] & 0xff];
+				value ^= ISMC2[block[off + i + 8] & 0xff] ^ ISMC3[block[off + i + 12] & 0xff];
 
-			block[i + 0] = (byte) ((value >> 24) & 0xff);
-			block[i + 4] = (byte) ((value >> 16) & 0xff);
-			block[i + 8] = (byte) ((value >> 8) & 0xff);
-			block[i + 12] = (byte) ((value) & 0xff);
+				block[off + i + 0] = (byte) ((value >> 24) & 0xff);
+				block[off + i + 4] = (byte) ((value >> 16) & 0xff);
+				block[off + i + 8] = (byte) ((value >> 8) & 0xff);
+				block[off + i + 12] = (byte) ((value) & 0xff);
+			}
 		}
 	}
 
-	private void transposeBlock() {
-		swapBlockElement(1, 4);
-		swapBlockElement(2, 8);
-		swapBlockElement(3, 12);
-		swapBlockElement(6, 9);
-		swapBlockElement(7, 13);
-		swapBlockElement(11, 14);
+	private void transposeBlock(int length) {
+		for (var off = 0; off < length; off += BLOCKSIZE) {
+			swapBlockElement(off + 1, off + 4);
+			swapBlockElement(off + 2, off + 8);
+			swapBlockElement(off + 3, off + 12);
+			swapBlockElement(off + 6, off + 9);
+			swapBlockElement(off + 7, off + 13);
+			swapBlockElement(off + 11, off + 14);
+		}
 	}
 
 	private void swapBlockElement(int lhs, int rhs) {
@@ -0,0 +1,576 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.block_cipher;
+
+import static mockup.crypto.util.DataConversions.bs2i_be;
+import static mockup.crypto.util.DataConversions.i2bs_be;
+import static mockup.crypto.util.Rotations.rotl32;
+
+import java.util.Arrays;
+
+import mockup.crypto.BlockCipher;
+
+/**
+ * Constant-time bitsliced AES
+ *
+ * Eight blocks are processed per call as two groups of eight 64-bit planes.
+ * Plane b of a group holds bit b of every byte of four blocks, where the byte
+ * at row r and column c of block j is stored at bit (c * 16 + r * 4 + j). The
+ * S-box is evaluated as the Boyar-Peralta boolean circuit, so neither the data
+ * path nor the key schedule performs secret-dependent memory accesses.
+ *
+ * The circuit costs far more than table lookups, so this runs well below
+ * {@link AesTable}; use it where timing side channels matter more than speed.
+ *
+ * This engine is for bulk use only. A single block costs as much as a whole
+ * group of four, so {@link #encryptBlock} and {@link #decryptBlock} waste three
+ * lanes on every call. Give it many blocks per call, as CTR, ECB and CBC
+ * decryption do through encryptBlocks and decryptBlocks. Serial chains such as
+ * CBC, CFB and OFB encryption can only feed it one block at a time and should
+ * use {@link AesTable} or {@link Aes} instead.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class AesBitsliced extends BlockCipher implements AesConstants {
+
+	public static final int BATCH_BLOCKS = 8;
+
+	private static final int BLOCKSIZE = 16;
+	private static final int GROUP_BLOCKS = 4;
+	private static final int GROUP_BYTES = GROUP_BLOCKS * BLOCKSIZE;
+
+	private int keysize;
+	private int rounds;
+	private long[] skey;
+	private long[] q = new long[16];
+	private byte[] batch = new byte[BATCH_BLOCKS * BLOCKSIZE];
+
+	@Override
+	public String getName() {
+		return "AES-" + (keysize << 3);
+	}
+
+	@Override
+	public int getBlocksize() {
+		return BLOCKSIZE;
+	}
+
+	@Override
+	public int getKeysize() {
+		return keysize;
+	}
+
+	@Override
+	public void init(byte[] mk) {
+		switch (mk.length) {
+		case 16:
+			rounds = AES128_ROUNDS;
+			break;
+
+		case 24:
+			rounds = AES192_ROUNDS;
+			break;
+
+		case 32:
+			rounds = AES256_ROUNDS;
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unsuppported keysize: " + mk.length);
+		}
+
+		keysize = mk.length;
+
+		var rk = expandKey(mk);
+		var copies = new byte[GROUP_BYTES];
+
+		skey = new long[(rounds + 1) << 3];
+		for (var i = 0; i <= rounds; ++i) {
+			for (var j = 0; j < GROUP_BYTES; j += 4) {
+				i2bs_be(rk[(i << 2) + ((j >> 2) & 3)], copies, j);
+			}
+			pack(copies, 0, skey, i << 3);
+		}
+	}
+
+	private int[] expandKey(byte[] mk) {
+		var nk = keysize >> 2;
+		var rk = new int[(rounds + 1) << 2];
+
+		for (var i = 0; i < nk; ++i) {
+			rk[i] = bs2i_be(mk, i << 2);
+		}
+
+		for (var i = nk; i < rk.length; ++i) {
+			var tmp = rk[i - 1];
+
+			if (i % nk == 0) {
+				tmp = subword(rotl32(tmp, 8)) ^ (RC[i / nk - 1] << 24);
+
+			} else if (nk > 6 && i % nk == 4) {
+				tmp = subword(tmp);
+			}
+
+			rk[i] = rk[i - nk] ^ tmp;
+		}
+
+		return rk;
+	}
+
+	private static int subword(int value) {
+		var w = new long[8];
+
+		for (var b = 0; b < 8; ++b) {
+			for (var j = 0; j < 4; ++j) {
+				w[b] |= (long) ((value >>> ((j << 3) + b)) & 1) << j;
+			}
+		}
+
+		sbox(w, 0);
+
+		var result = 0;
+		for (var b = 0; b < 8; ++b) {
+			for (var j = 0; j < 4; ++j) {
+				result |= (int) ((w[b] >>> j) & 1) << ((j << 3) + b);
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public void encryptBlock(final byte[] src, int srcOff, byte[] dst, int dstOff) {
+		encryptBlocks(src, srcOff, dst, dstOff, 1);
+	}
+
+	@Override
+	public void decryptBlock(final byte[] src, int srcOff, byte[] dst, int dstOff) {
+		decryptBlocks(src, srcOff, dst, dstOff, 1);
+	}
+
+	@Override
+	public void encryptBlocks(final byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount) {
+		process(src, srcOff, dst, dstOff, blockCount, true);
+	}
+
+	@Override
+	public void decryptBlocks(final byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount) {
+		process(src, srcOff, dst, dstOff, blockCount, false);
+	}
+
+	private void process(final byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount, boolean encrypt) {
+		while (blockCount >= BATCH_BLOCKS) {
+			processGroups(src, srcOff, dst, dstOff, 2, encrypt);
+
+			srcOff += BATCH_BLOCKS * BLOCKSIZE;
+			dstOff += BATCH_BLOCKS * BLOCKSIZE;
+			blockCount -= BATCH_BLOCKS;
+		}
+
+		if (blockCount > 0) {
+			// zero-pad the remaining blocks up to a whole group so unused lanes never carry earlier data
+			var length = blockCount * BLOCKSIZE;
+			var groups = blockCount > GROUP_BLOCKS ? 2 : 1;
+
+			System.arraycopy(src, srcOff, batch, 0, length);
+			Arrays.fill(batch, length, groups * GROUP_BYTES, (byte) 0);
+			processGroups(batch, 0, batch, 0, groups, encrypt);
+			System.arraycopy(batch, 0, dst, dstOff, length);
+		}
+	}
+
+	private void processGroups(final byte[] src, int srcOff, byte[] dst, int dstOff, int groups, boolean encrypt) {
+		for (var g = 0; g < groups; ++g) {
+			pack(src, srcOff + g * GROUP_BYTES, q, g << 3);
+		}
+
+		for (var g = 0; g < groups; ++g) {
+			if (encrypt) {
+				encryptGroup(g << 3);
+
+			} else {
+				decryptGroup(g << 3);
+			}
+		}
+
+		for (var g = 0; g < groups; ++g) {
+			unpack(q, g << 3, dst, dstOff + g * GROUP_BYTES);
+		}
+	}
+
+	private void encryptGroup(int off) {
+		addRoundKey(off, 0);
+
+		for (var i = 1; i < rounds; ++i) {
+			sbox(q, off);
+			shiftRows(off);
+			mixColumns(off);
+			addRoundKey(off, i);
+		}
+
+		sbox(q, off);
+		shiftRows(off);
+		addRoundKey(off, rounds);
+	}
+
+	private void decryptGroup(int off) {
+		addRoundKey(off, rounds);
+
+		for (var i = rounds - 1; i > 0; --i) {
+			inverseShiftRows(off);
+			inverseSbox(q, off);
+			addRoundKey(off, i);
+			inverseMixColumns(off);
+		}
+
+		inverseShiftRows(off);
+		inverseSbox(q, off);
+		addRoundKey(off, 0);
+	}
+
+	private void addRoundKey(int off, int round) {
+		var kidx = round << 3;
+		for (var b = 0; b < 8; ++b) {
+			q[off + b] ^= skey[kidx + b];
+		}
+	}
+
+	private void shiftRows(int off) {
+		for (var b = 0; b < 8; ++b) {
+			var x = q[off + b];
+			q[off + b] = (x & 0x000f000f000f000fL) | Long.rotateRight(x & 0x00f000f000f000f0L, 16)
+					| Long.rotateRight(x & 0x0f000f000f000f00L, 32) | Long.rotateRight(x & 0xf000f000f000f000L, 48);
+		}
+	}
+
+	private void inverseShiftRows(int off) {
+		for (var b = 0; b < 8; ++b) {
+			var x = q[off + b];
+			q[off + b] = (x & 0x000f000f000f000fL) | Long.rotateLeft(x & 0x00f000f000f000f0L, 16)
+					| Long.rotateLeft(x & 0x0f000f000f000f00L, 32) | Long.rotateLeft(x & 0xf000f000f000f000L, 48);
+		}
+	}
+
+	// moves row r + 1 of every column to row r
+	private static long rotateRows1(long x) {
+		return ((x >>> 4) & 0x0fff0fff0fff0fffL) | ((x & 0x000f000f000f000fL) << 12);
+	}
+
+	private static long rotateRows2(long x) {
+		return ((x >>> 8) & 0x00ff00ff00ff00ffL) | ((x & 0x00ff00ff00ff00ffL) << 8);
+	}
+
+	private void mixColumns(int off) {
+		// out[r] = 2 * (a[r] ^ a[r + 1]) ^ a[r + 1] ^ a[r + 2] ^ a[r + 3]
+		var a0 = q[off + 0];
+		var a1 = q[off + 1];
+		var a2 = q[off + 2];
+		var a3 = q[off + 3];
+		var a4 = q[off + 4];
+		var a5 = q[off + 5];
+		var a6 = q[off + 6];
+		var a7 = q[off + 7];
+
+		var r0 = rotateRows1(a0);
+		var r1 = rotateRows1(a1);
+		var r2 = rotateRows1(a2);
+		var r3 = rotateRows1(a3);
+		var r4 = rotateRows1(a4);
+		var r5 = rotateRows1(a5);
+		var r6 = rotateRows1(a6);
+		var r7 = rotateRows1(a7);
+
+		var t0 = a0 ^ r0;
+		var t1 = a1 ^ r1;
+		var t2 = a2 ^ r2;
+		var t3 = a3 ^ r3;
+		var t4 = a4 ^ r4;
+		var t5 = a5 ^ r5;
+		var t6 = a6 ^ r6;
+		var t7 = a7 ^ r7;
+
+		q[off + 0] = t7 ^ r0 ^ rotateRows2(t0);
+		q[off + 1] = t0 ^ t7 ^ r1 ^ rotateRows2(t1);
+		q[off + 2] = t1 ^ r2 ^ rotateRows2(t2);
+		q[off + 3] = t2 ^ t7 ^ r3 ^ rotateRows2(t3);
+		q[off + 4] = t3 ^ t7 ^ r4 ^ rotateRows2(t4);
+		q[off + 5] = t4 ^ r5 ^ rotateRows2(t5);
+		q[off + 6] = t5 ^ r6 ^ rotateRows2(t6);
+		q[off + 7] = t6 ^ r7 ^ rotateRows2(t7);
+	}
+
+	private void inverseMixColumns(int off) {
+		// InvMixColumns = MixColumns * (a[r] ^ 4 * (a[r] ^ a[r + 2]))
+		var u0 = q[off + 0] ^ rotateRows2(q[off + 0]);
+		var u1 = q[off + 1] ^ rotateRows2(q[off + 1]);
+		var u2 = q[off + 2] ^ rotateRows2(q[off + 2]);
+		var u3 = q[off + 3] ^ rotateRows2(q[off + 3]);
+		var u4 = q[off + 4] ^ rotateRows2(q[off + 4]);
+		var u5 = q[off + 5] ^ rotateRows2(q[off + 5]);
+		var u6 = q[off + 6] ^ rotateRows2(q[off + 6]);
+		var u7 = q[off + 7] ^ rotateRows2(q[off + 7]);
+
+		q[off + 0] ^= u6;
+		q[off + 1] ^= u6 ^ u7;
+		q[off + 2] ^= u0 ^ u7;
+		q[off + 3] ^= u1 ^ u6;
+		q[off + 4] ^= u2 ^ u6 ^ u7;
+		q[off + 5] ^= u3 ^ u7;
+		q[off + 6] ^= u4;
+		q[off + 7] ^= u5;
+
+		mixColumns(off);
+	}
+
+	private static void sbox(long[] q, int off) {
+		long x0 = q[off + 7];
+		long x1 = q[off + 6];
+		long x2 = q[off + 5];
+		long x3 = q[off + 4];
+		long x4 = q[off + 3];
+		long x5 = q[off + 2];
+		long x6 = q[off + 1];
+		long x7 = q[off + 0];
+
+		// top linear transformation
+		long y14 = x3 ^ x5;
+		long y13 = x0 ^ x6;
+		long y9 = x0 ^ x3;
+		long y8 = x0 ^ x5;
+		long t0 = x1 ^ x2;
+		long y1 = t0 ^ x7;
+		long y4 = y1 ^ x3;
+		long y12 = y13 ^ y14;
+		long y2 = y1 ^ x0;
+		long y5 = y1 ^ x6;
+		long y3 = y5 ^ y8;
+		long t1 = x4 ^ y12;
+		long y15 = t1 ^ x5;
+		long y20 = t1 ^ x1;
+		long y6 = y15 ^ x7;
+		long y10 = y15 ^ t0;
+		long y11 = y20 ^ y9;
+		long y7 = x7 ^ y11;
+		long y17 = y10 ^ y11;
+		long y19 = y10 ^ y8;
+		long y16 = t0 ^ y11;
+		long y21 = y13 ^ y16;
+		long y18 = x0 ^ y16;
+
+		// non-linear section
+		long t2 = y12 & y15;
+		long t3 = y3 & y6;
+		long t4 = t3 ^ t2;
+		long t5 = y4 & x7;
+		long t6 = t5 ^ t2;
+		long t7 = y13 & y16;
+		long t8 = y5 & y1;
+		long t9 = t8 ^ t7;
+		long t10 = y2 & y7;
+		long t11 = t10 ^ t7;
+		long t12 = y9 & y11;
+		long t13 = y14 & y17;
+		long t14 = t13 ^ t12;
+		long t15 = y8 & y10;
+		long t16 = t15 ^ t12;
+		long t17 = t4 ^ t14;
+		long t18 = t6 ^ t16;
+		long t19 = t9 ^ t14;
+		long t20 = t11 ^ t16;
+		long t21 = t17 ^ y20;
+		long t22 = t18 ^ y19;
+		long t23 = t19 ^ y21;
+		long t24 = t20 ^ y18;
+
+		long t25 = t21 ^ t22;
+		long t26 = t21 & t23;
+		long t27 = t24 ^ t26;
+		long t28 = t25 & t27;
+		long t29 = t28 ^ t22;
+		long t30 = t23 ^ t24;
+		long t31 = t22 ^ t26;
+		long t32 = t31 & t30;
+		long t33 = t32 ^ t24;
+		long t34 = t23 ^ t33;
+		long t35 = t27 ^ t33;
+		long t36 = t24 & t35;
+		long t37 = t36 ^ t34;
+		long t38 = t27 ^ t36;
+		long t39 = t29 & t38;
+		long t40 = t25 ^ t39;
+
+		long t41 = t40 ^ t37;
+		long t42 = t29 ^ t33;
+		long t43 = t29 ^ t40;
+		long t44 = t33 ^ t37;
+		long t45 = t42 ^ t41;
+		long z0 = t44 & y15;
+		long z1 = t37 & y6;
+		long z2 = t33 & x7;
+		long z3 = t43 & y16;
+		long z4 = t40 & y1;
+		long z5 = t29 & y7;
+		long z6 = t42 & y11;
+		long z7 = t45 & y17;
+		long z8 = t41 & y10;
+		long z9 = t44 & y12;
+		long z10 = t37 & y3;
+		long z11 = t33 & y4;
+		long z12 = t43 & y13;
+		long z13 = t40 & y5;
+		long z14 = t29 & y2;
+		long z15 = t42 & y9;
+		long z16 = t45 & y14;
+		long z17 = t41 & y8;
+
+		// bottom linear transformation
+		long t46 = z15 ^ z16;
+		long t47 = z10 ^ z11;
+		long t48 = z5 ^ z13;
+		long t49 = z9 ^ z10;
+		long t50 = z2 ^ z12;
+		long t51 = z2 ^ z5;
+		long t52 = z7 ^ z8;
+		long t53 = z0 ^ z3;
+		long t54 = z6 ^ z7;
+		long t55 = z16 ^ z17;
+		long t56 = z12 ^ t48;
+		long t57 = t50 ^ t53;
+		long t58 = z4 ^ t46;
+		long t59 = z3 ^ t54;
+		long t60 = t46 ^ t57;
+		long t61 = z14 ^ t57;
+		long t62 = t52 ^ t58;
+		long t63 = t49 ^ t58;
+		long t64 = z4 ^ t59;
+		long t65 = t61 ^ t62;
+		long t66 = z1 ^ t63;
+		long s0 = t59 ^ t63;
+		long s6 = t56 ^ ~t62;
+		long s7 = t48 ^ ~t60;
+		long t67 = t64 ^ t65;
+		long s3 = t53 ^ t66;
+		long s4 = t51 ^ t66;
+		long s5 = t47 ^ t65;
+		long s1 = t64 ^ ~s3;
+		long s2 = t55 ^ ~t67;
+
+		q[off + 7] = s0;
+		q[off + 6] = s1;
+		q[off + 5] = s2;
+		q[off + 4] = s3;
+		q[off + 3] = s4;
+		q[off + 2] = s5;
+		q[off + 1] = s6;
+		q[off + 0] = s7;
+	}
+
+	private static void inverseSbox(long[] q, int off) {
+		// SINV = A' * SBOX * A', where A' is the inverse of the affine map
+		inverseAffine(q, off);
+		sbox(q, off);
+		inverseAffine(q, off);
+	}
+
+	private static void inverseAffine(long[] q, int off) {
+		long q0 = ~q[off + 0];
+		long q1 = ~q[off + 1];
+		long q2 = q[off + 2];
+		long q3 = q[off + 3];
+		long q4 = q[off + 4];
+		long q5 = ~q[off + 5];
+		long q6 = ~q[off + 6];
+		long q7 = q[off + 7];
+
+		q[off + 7] = q1 ^ q4 ^ q6;
+		q[off + 6] = q0 ^ q3 ^ q5;
+		q[off + 5] = q7 ^ q2 ^ q4;
+		q[off + 4] = q6 ^ q1 ^ q3;
+		q[off + 3] = q5 ^ q0 ^ q2;
+		q[off + 2] = q4 ^ q7 ^ q1;
+		q[off + 1] = q3 ^ q6 ^ q0;
+		q[off + 0] = q2 ^ q5 ^ q7;
+	}
+
+	private static void pack(final byte[] src, int srcOff, long[] q, int off) {
+		// word k gets bytes 2k and 2k + 1 of the four blocks
+		for (var k = 0; k < 8; ++k) {
+			var pos = srcOff + (k << 1);
+			long w = 0;
+			for (var i = 0; i < 8; ++i) {
+				w |= (src[pos + ((i & 3) << 4) + (i >> 2)] & 0xffL) << (i << 3);
+			}
+			q[off + k] = transposeBits(w);
+		}
+
+		transposeBytes(q, off);
+	}
+
+	private static void unpack(long[] q, int off, byte[] dst, int dstOff) {
+		transposeBytes(q, off);
+
+		for (var k = 0; k < 8; ++k) {
+			var pos = dstOff + (k << 1);
+			var w = transposeBits(q[off + k]);
+			for (var i = 0; i < 8; ++i) {
+				dst[pos + ((i & 3) << 4) + (i >> 2)] = (byte) (w >>> (i << 3));
+			}
+		}
+	}
+
+	// transposes the 8x8 bit matrix whose rows are the bytes of x
+	private static long transposeBits(long x) {
+		var t = (x ^ (x >>> 7)) & 0x00aa00aa00aa00aaL;
+		x ^= t ^ (t << 7);
+		t = (x ^ (x >>> 14)) & 0x0000cccc0000ccccL;
+		x ^= t ^ (t << 14);
+		t = (x ^ (x >>> 28)) & 0x00000000f0f0f0f0L;
+		x ^= t ^ (t << 28);
+		return x;
+	}
+
+	// swaps byte j of q[off + i] with byte i of q[off + j]
+	private static void transposeBytes(long[] q, int off) {
+		for (var i = 0; i < 4; ++i) {
+			swapMove(q, off + i, off + i + 4, 32, 0x00000000ffffffffL);
+		}
+
+		for (var i = 0; i < 8; i += 4) {
+			swapMove(q, off + i, off + i + 2, 16, 0x0000ffff0000ffffL);
+			swapMove(q, off + i + 1, off + i + 3, 16, 0x0000ffff0000ffffL);
+		}
+
+		for (var i = 0; i < 8; i += 2) {
+			swapMove(q, off + i, off + i + 1, 8, 0x00ff00ff00ff00ffL);
+		}
+	}
+
+	private static void swapMove(long[] q, int lo, int hi, int shift, long mask) {
+		var t = ((q[lo] >>> shift) ^ q[hi]) & mask;
+		q[hi] ^= t;
+		q[lo] ^= t << shift;
+	}
+}
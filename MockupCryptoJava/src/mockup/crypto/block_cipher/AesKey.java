@@ -0,0 +1,171 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.block_cipher;
+
+import static mockup.crypto.util.DataConversions.bs2i_be;
+import static mockup.crypto.util.Rotations.rotl32;
+
+import java.util.Arrays;
+
+import mockup.crypto.ExpandedKey;
+
+/**
+ * Immutable expanded AES key
+ *
+ * Holds the encryption round keys as big-endian column words, and the round
+ * keys of the equivalent inverse cipher, which are built on first use. The
+ * object can be shared by any number of threads; ciphers obtained from
+ * {@link #newCipher()} keep no state of their own.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public final class AesKey implements ExpandedKey, AesConstants {
+
+	private final int keysize;
+	private final int rounds;
+	private final int[] erks;
+	private volatile int[] drks;
+	private volatile boolean isDestroyed;
+
+	public AesKey(byte[] mk) {
+		switch (mk.length) {
+		case 16:
+			rounds = AES128_ROUNDS;
+			break;
+
+		case 24:
+			rounds = AES192_ROUNDS;
+			break;
+
+		case 32:
+			rounds = AES256_ROUNDS;
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unsuppported keysize: " + mk.length);
+		}
+
+		keysize = mk.length;
+		erks = expandKey(mk);
+	}
+
+	@Override
+	public int getKeysize() {
+		return keysize;
+	}
+
+	public int getRounds() {
+		return rounds;
+	}
+
+	@Override
+	public AesTable newCipher() {
+		return new AesTable(this);
+	}
+
+	int[] encryptionKeys() {
+		checkDestroyed();
+		return erks;
+	}
+
+	int[] decryptionKeys() {
+		checkDestroyed();
+		var dk = drks;
+
+		// racing threads compute the same schedule, so either copy may win
+		if (dk == null) {
+			dk = invertKey(erks);
+			drks = dk;
+		}
+
+		return dk;
+	}
+
+	// zeroizes both schedules; ciphers still bound to the key fail from then on
+	void destroy() {
+		isDestroyed = true;
+		Arrays.fill(erks, 0);
+
+		var dk = drks;
+		if (dk != null) {
+			Arrays.fill(dk, 0);
+		}
+	}
+
+	private void checkDestroyed() {
+		if (isDestroyed) {
+			throw new IllegalStateException("AES key is already destroyed");
+		}
+	}
+
+	private int[] expandKey(byte[] mk) {
+		var nk = keysize >> 2;
+		var rk = new int[(rounds + 1) << 2];
+
+		for (var i = 0; i < nk; ++i) {
+			rk[i] = bs2i_be(mk, i << 2);
+		}
+
+		for (var i = nk; i < rk.length; ++i) {
+			var tmp = rk[i - 1];
+
+			if (i % nk == 0) {
+				tmp = subword(rotl32(tmp, 8)) ^ (RC[i / nk - 1] << 24);
+
+			} else if (nk > 6 && i % nk == 4) {
+				tmp = subword(tmp);
+			}
+
+			rk[i] = rk[i - nk] ^ tmp;
+		}
+
+		return rk;
+	}
+
+	private int[] invertKey(int[] rk) {
+		var dk = new int[rk.length];
+		var last = rounds << 2;
+
+		System.arraycopy(rk, last, dk, 0, 4);
+		for (var i = 4; i < last; ++i) {
+			dk[i] = inverseMixColumn(rk[last - (i & ~3) + (i & 3)]);
+		}
+		System.arraycopy(rk, 0, dk, last, 4);
+
+		return dk;
+	}
+
+	private static int inverseMixColumn(int value) {
+		// ISMC tables already contain the inverse sbox, so it is cancelled here
+		return ISMC0[SBOX[value >>> 24] & 0xff] ^ ISMC1[SBOX[(value >>> 16) & 0xff] & 0xff]
+				^ ISMC2[SBOX[(value >>> 8) & 0xff] & 0xff] ^ ISMC3[SBOX[value & 0xff] & 0xff];
+	}
+
+	private static int subword(int value) {
+		return ((SBOX[value >>> 24] & 0xff) << 24) | ((SBOX[(value >>> 16) & 0xff] & 0xff) << 16)
+				| ((SBOX[(value >>> 8) & 0xff] & 0xff) << 8) | (SBOX[value & 0xff] & 0xff);
+	}
+}
@@ -0,0 +1,271 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package mockup.crypto.block_cipher;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import mockup.crypto.BlockCipher;
+import mockup.crypto.ExpandedKey;
+import mockup.crypto.hash.Sha256;
+
+/**
+ * Size-bounded LRU cache of expanded AES keys
+ *
+ * Entries are looked up by the SHA-256 digest of the key bytes, so the cache
+ * never holds raw keys. A key is handed out as a {@link Lease}; an evicted
+ * schedule is zeroized as soon as its last lease is closed, and a cipher set up
+ * from that lease throws IllegalStateException from then on.
+ *
+ * Lookups take no global lock. A miss publishes a pending entry and expands the
+ * key outside any lock, and threads asking for the same key meanwhile wait on
+ * that entry only. Recency is a global tick stamped on each use; a miss that
+ * overfills the cache evicts the entry with the oldest stamp.
+ *
+ * <pre>
+ * try (var key = cache.acquire(mk)) {
+ *     bbc.init(CipherMode.DECRYPT, key, iv);
+ *     pt = bbc.doFinal(ct);
+ * }
+ * </pre>
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class AesKeyCache {
+
+	private final int capacity;
+	private final ConcurrentHashMap<Digest, CachedKey> entries = new ConcurrentHashMap<>();
+	private final AtomicLong clock = new AtomicLong();
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	public AesKeyCache(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity should be positive");
+		}
+
+		this.capacity = capacity;
+	}
+
+	public Lease acquire(byte[] mk) {
+		if (mk.length != 16 && mk.length != 24 && mk.length != 32) {
+			throw new IllegalArgumentException("Unsuppported keysize: " + mk.length);
+		}
+
+		var digest = new Digest(new Sha256().doFinal(mk));
+
+		while (true) {
+			var entry = entries.get(digest);
+
+			if (entry == null) {
+				// the new entry carries the caller's lease, so it cannot be destroyed before it is expanded
+				var created = new CachedKey(clock.incrementAndGet());
+				entry = entries.putIfAbsent(digest, created);
+
+				if (entry == null) {
+					missCount.increment();
+					expand(digest, created, mk);
+					evictOverflow();
+					return new Lease(created);
+				}
+			}
+
+			if (entry.lease(clock.incrementAndGet())) {
+				hitCount.increment();
+				return new Lease(entry);
+			}
+
+			// evicted in between; it is already out of the map or about to be
+			entries.remove(digest, entry);
+		}
+	}
+
+	public void clear() {
+		for (var mapping : entries.entrySet()) {
+			if (entries.remove(mapping.getKey(), mapping.getValue())) {
+				evict(mapping.getValue());
+			}
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	// waiters on the entry are released even if the expansion fails
+	private void expand(Digest digest, CachedKey entry, byte[] mk) {
+		try {
+			entry.key.complete(new AesKey(mk));
+
+		} catch (RuntimeException | Error e) {
+			entries.remove(digest, entry);
+			entry.key.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	// runs on misses only, so the scan costs no more than the expansion before it
+	private void evictOverflow() {
+		while (entries.size() > capacity) {
+			Digest oldest = null;
+			CachedKey victim = null;
+
+			for (var mapping : entries.entrySet()) {
+				var entry = mapping.getValue();
+
+				if (victim == null || entry.lastUsed < victim.lastUsed) {
+					oldest = mapping.getKey();
+					victim = entry;
+				}
+			}
+
+			if (victim != null && entries.remove(oldest, victim)) {
+				evict(victim);
+			}
+		}
+	}
+
+	private void evict(CachedKey entry) {
+		evictionCount.increment();
+		entry.evict();
+	}
+
+	public final class Lease implements ExpandedKey, AutoCloseable {
+
+		private final CachedKey entry;
+		private boolean closed;
+
+		private Lease(CachedKey entry) {
+			this.entry = entry;
+		}
+
+		public AesKey getKey() {
+			if (closed) {
+				throw new IllegalStateException("lease is already closed");
+			}
+
+			return entry.key.join();
+		}
+
+		@Override
+		public int getKeysize() {
+			return getKey().getKeysize();
+		}
+
+		@Override
+		public BlockCipher newCipher() {
+			return getKey().newCipher();
+		}
+
+		@Override
+		public void close() {
+			if (closed == false) {
+				closed = true;
+				entry.release();
+			}
+		}
+	}
+
+	// leases are counted under the entry's own monitor, which only its users contend on
+	private static final class CachedKey {
+		private final CompletableFuture<AesKey> key = new CompletableFuture<>();
+		private volatile long lastUsed;
+		private int leases = 1;
+		private boolean evicted;
+
+		private CachedKey(long lastUsed) {
+			this.lastUsed = lastUsed;
+		}
+
+		private synchronized boolean lease(long now) {
+			if (evicted) {
+				return false;
+			}
+
+			leases += 1;
+			lastUsed = now;
+			return true;
+		}
+
+		private synchronized void release() {
+			leases -= 1;
+
+			if (evicted && leases == 0) {
+				key.join().destroy();
+			}
+		}
+
+		private synchronized void evict() {
+			evicted = true;
+
+			if (leases == 0) {
+				key.join().destroy();
+			}
+		}
+	}
+
+	private static final class Digest {
+		private final byte[] value;
+		private final int hash;
+
+		private Digest(byte[] value) {
+			this.value = value;
+			this.hash = Arrays.hashCode(value);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof Digest) && Arrays.equals(value, ((Digest) obj).value);
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.block_cipher;
+
+import static mockup.crypto.util.DataConversions.bs2i_be;
+import static mockup.crypto.util.DataConversions.l2bs_be;
+
+import java.nio.ByteBuffer;
+
+import mockup.crypto.BlockCipher;
+
+/**
+ * AES with 32-bit T-table rounds
+ *
+ * The state is kept in four big-endian column words, so ShiftRows, SubBytes
+ * and MixColumns of a round are merged into the SMC / ISMC table lookups.
+ * Decryption uses the equivalent inverse cipher. All round state lives on the
+ * stack, so an instance bound to an {@link AesKey} may be shared by threads.
+ * The class is final so the block loops below bind encryptBlock statically.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public final class AesTable extends BlockCipher implements AesConstants {
+
+	private static final int BLOCKSIZE = 16;
+	private AesKey key;
+
+	public AesTable() {
+	}
+
+	public AesTable(AesKey key) {
+		this.key = key;
+	}
+
+	@Override
+	public String getName() {
+		return "AES-" + (getKeysize() << 3);
+	}
+
+	@Override
+	public int getBlocksize() {
+		return BLOCKSIZE;
+	}
+
+	@Override
+	public int getKeysize() {
+		return key == null ? 0 : key.getKeysize();
+	}
+
+	@Override
+	public void init(byte[] mk) {
+		key = new AesKey(mk);
+	}
+
+	private static int sub(byte[] box, int b0, int b1, int b2, int b3) {
+		return ((box[b0 & 0xff] & 0xff) << 24) | ((box[b1 & 0xff] & 0xff) << 16) | ((box[b2 & 0xff] & 0xff) << 8)
+				| (box[b3 & 0xff] & 0xff);
+	}
+
+	private static int smc(int s0, int s1, int s2, int s3) {
+		return SMC0[s0 >>> 24] ^ SMC1[(s1 >>> 16) & 0xff] ^ SMC2[(s2 >>> 8) & 0xff] ^ SMC3[s3 & 0xff];
+	}
+
+	private static int ismc(int s0, int s1, int s2, int s3) {
+		return ISMC0[s0 >>> 24] ^ ISMC1[(s1 >>> 16) & 0xff] ^ ISMC2[(s2 >>> 8) & 0xff] ^ ISMC3[s3 & 0xff];
+	}
+
+	private static long pair(int hi, int lo) {
+		return ((long) hi << 32) | (lo & 0xffffffffL);
+	}
+
+	// The round helpers give two output columns, high word first. Columns 2 and 3 are
+	// columns 0 and 1 of the state rotated by two words, so each round is two calls
+	// with the state in order (s0, s1, s2, s3) and then (s2, s3, s0, s1).
+
+	private static long encryptRound(int[] rk, int ridx, int s0, int s1, int s2, int s3) {
+		return pair(smc(s0, s1, s2, s3) ^ rk[ridx], smc(s1, s2, s3, s0) ^ rk[ridx + 1]);
+	}
+
+	private static long encryptLastRound(int[] rk, int ridx, int s0, int s1, int s2, int s3) {
+		return pair(sub(SBOX, s0 >>> 24, s1 >>> 16, s2 >>> 8, s3) ^ rk[ridx],
+				sub(SBOX, s1 >>> 24, s2 >>> 16, s3 >>> 8, s0) ^ rk[ridx + 1]);
+	}
+
+	private static long decryptRound(int[] rk, int ridx, int s0, int s1, int s2, int s3) {
+		return pair(ismc(s0, s3, s2, s1) ^ rk[ridx], ismc(s1, s0, s3, s2) ^ rk[ridx + 1]);
+	}
+
+	private static long decryptLastRound(int[] rk, int ridx, int s0, int s1, int s2, int s3) {
+		return pair(sub(SINV, s0 >>> 24, s3 >>> 16, s2 >>> 8, s1) ^ rk[ridx],
+				sub(SINV, s1 >>> 24, s0 >>> 16, s3 >>> 8, s2) ^ rk[ridx + 1]);
+	}
+
+	@Override
+	public void encryptBlock(final byte[] src, int srcOff, byte[] dst, int dstOff) {
+		final var rk = key.encryptionKeys();
+		final var rounds = key.getRounds();
+
+		var s0 = bs2i_be(src, srcOff) ^ rk[0];
+		var s1 = bs2i_be(src, srcOff + 4) ^ rk[1];
+		var s2 = bs2i_be(src, srcOff + 8) ^ rk[2];
+		var s3 = bs2i_be(src, srcOff + 12) ^ rk[3];
+
+		var ridx = 4;
+		for (var i = 1; i < rounds; ++i, ridx += 4) {
+			var t01 = encryptRound(rk, ridx, s0, s1, s2, s3);
+			var t23 = encryptRound(rk, ridx + 2, s2, s3, s0, s1);
+
+			s0 = (int) (t01 >>> 32);
+			s1 = (int) t01;
+			s2 = (int) (t23 >>> 32);
+			s3 = (int) t23;
+		}
+
+		l2bs_be(encryptLastRound(rk, ridx, s0, s1, s2, s3), dst, dstOff);
+		l2bs_be(encryptLastRound(rk, ridx + 2, s2, s3, s0, s1), dst, dstOff + 8);
+	}
+
+	@Override
+	public void encryptBlocks(final byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount) {
+		for (var i = 0; i < blockCount; ++i, srcOff += BLOCKSIZE, dstOff += BLOCKSIZE) {
+			encryptBlock(src, srcOff, dst, dstOff);
+		}
+	}
+
+	@Override
+	public void decryptBlock(final byte[] src, int srcOff, byte[] dst, int dstOff) {
+		final var rk = key.decryptionKeys();
+		final var rounds = key.getRounds();
+
+		var s0 = bs2i_be(src, srcOff) ^ rk[0];
+		var s1 = bs2i_be(src, srcOff + 4) ^ rk[1];
+		var s2 = bs2i_be(src, srcOff + 8) ^ rk[2];
+		var s3 = bs2i_be(src, srcOff + 12) ^ rk[3];
+
+		var ridx = 4;
+		for (var i = 1; i < rounds; ++i, ridx += 4) {
+			var t01 = decryptRound(rk, ridx, s0, s1, s2, s3);
+			var t23 = decryptRound(rk, ridx + 2, s2, s3, s0, s1);
+
+			s0 = (int) (t01 >>> 32);
+			s1 = (int) t01;
+			s2 = (int) (t23 >>> 32);
+			s3 = (int) t23;
+		}
+
+		l2bs_be(decryptLastRound(rk, ridx, s0, s1, s2, s3), dst, dstOff);
+		l2bs_be(decryptLastRound(rk, ridx + 2, s2, s3, s0, s1), dst, dstOff + 8);
+	}
+
+	@Override
+	public void decryptBlocks(final byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount) {
+		for (var i = 0; i < blockCount; ++i, srcOff += BLOCKSIZE, dstOff += BLOCKSIZE) {
+			decryptBlock(src, srcOff, dst, dstOff);
+		}
+	}
+
+	// direct buffers are read and written a column word at a time, without staging
+	@Override
+	protected void encryptBuffer(ByteBuffer src, int srcIdx, ByteBuffer dst, int dstIdx, int blockCount) {
+		final var rk = key.encryptionKeys();
+		final var rounds = key.getRounds();
+
+		for (var b = 0; b < blockCount; ++b, srcIdx += BLOCKSIZE, dstIdx += BLOCKSIZE) {
+			var s0 = bs2i_be(src, srcIdx) ^ rk[0];
+			var s1 = bs2i_be(src, srcIdx + 4) ^ rk[1];
+			var s2 = bs2i_be(src, srcIdx + 8) ^ rk[2];
+			var s3 = bs2i_be(src, srcIdx + 12) ^ rk[3];
+
+			var ridx = 4;
+			for (var i = 1; i < rounds; ++i, ridx += 4) {
+				var t01 = encryptRound(rk, ridx, s0, s1, s2, s3);
+				var t23 = encryptRound(rk, ridx + 2, s2, s3, s0, s1);
+
+				s0 = (int) (t01 >>> 32);
+				s1 = (int) t01;
+				s2 = (int) (t23 >>> 32);
+				s3 = (int) t23;
+			}
+
+			l2bs_be(encryptLastRound(rk, ridx, s0, s1, s2, s3), dst, dstIdx);
+			l2bs_be(encryptLastRound(rk, ridx + 2, s2, s3, s0, s1), dst, dstIdx + 8);
+		}
+	}
+
+	@Override
+	protected void decryptBuffer(ByteBuffer src, int srcIdx, ByteBuffer dst, int dstIdx, int blockCount) {
+		final var rk = key.decryptionKeys();
+		final var rounds = key.getRounds();
+
+		for (var b = 0; b < blockCount; ++b, srcIdx += BLOCKSIZE, dstIdx += BLOCKSIZE) {
+			var s0 = bs2i_be(src, srcIdx) ^ rk[0];
+			var s1 = bs2i_be(src, srcIdx + 4) ^ rk[1];
+			var s2 = bs2i_be(src, srcIdx + 8) ^ rk[2];
+			var s3 = bs2i_be(src, srcIdx + 12) ^ rk[3];
+
+			var ridx = 4;
+			for (var i = 1; i < rounds; ++i, ridx += 4) {
+				var t01 = decryptRound(rk, ridx, s0, s1, s2, s3);
+				var t23 = decryptRound(rk, ridx + 2, s2, s3, s0, s1);
+
+				s0 = (int) (t01 >>> 32);
+				s1 = (int) t01;
+				s2 = (int) (t23 >>> 32);
+				s3 = (int) t23;
+			}
+
+			l2bs_be(decryptLastRound(rk, ridx, s0, s1, s2, s3), dst, dstIdx);
+			l2bs_be(decryptLastRound(rk, ridx + 2, s2, s3, s0, s1), dst, dstIdx + 8);
+		}
+	}
+}
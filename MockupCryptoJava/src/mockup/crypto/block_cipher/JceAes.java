@@ -0,0 +1,153 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.block_cipher;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+import mockup.crypto.BlockCipher;
+
+/**
+ * AES backed by the platform JCE provider
+ *
+ * Blocks are passed to "AES/ECB/NoPadding", which HotSpot compiles to AES-NI
+ * (or the ARMv8 crypto extensions) where the CPU supports it. Bulk calls hand
+ * the whole range to the provider in a single update.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class JceAes extends BlockCipher {
+
+	private static final int BLOCKSIZE = 16;
+	private static final String TRANSFORMATION = "AES/ECB/NoPadding";
+
+	private int keysize;
+	private SecretKeySpec key;
+	private Cipher encryptor;
+	private Cipher decryptor;
+
+	@Override
+	public String getName() {
+		return "AES-" + (keysize << 3);
+	}
+
+	@Override
+	public int getBlocksize() {
+		return BLOCKSIZE;
+	}
+
+	@Override
+	public int getKeysize() {
+		return keysize;
+	}
+
+	@Override
+	public void init(byte[] mk) {
+		if (mk.length != 16 && mk.length != 24 && mk.length != 32) {
+			throw new IllegalArgumentException("Unsuppported keysize: " + mk.length);
+		}
+
+		keysize = mk.length;
+		key = new SecretKeySpec(mk, "AES");
+		encryptor = newCipher(Cipher.ENCRYPT_MODE);
+		decryptor = null;
+	}
+
+	private Cipher newCipher(int opmode) {
+		try {
+			var cipher = Cipher.getInstance(TRANSFORMATION);
+			cipher.init(opmode, key);
+			return cipher;
+
+		} catch (InvalidKeyException e) {
+			throw new IllegalArgumentException(e);
+
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(TRANSFORMATION + " is not available", e);
+		}
+	}
+
+	@Override
+	public void encryptBlock(final byte[] src, int srcOff, byte[] dst, int dstOff) {
+		update(encryptor, src, srcOff, dst, dstOff, BLOCKSIZE);
+	}
+
+	@Override
+	public void decryptBlock(final byte[] src, int srcOff, byte[] dst, int dstOff) {
+		update(getDecryptor(), src, srcOff, dst, dstOff, BLOCKSIZE);
+	}
+
+	@Override
+	public void encryptBlocks(final byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount) {
+		update(encryptor, src, srcOff, dst, dstOff, blockCount * BLOCKSIZE);
+	}
+
+	@Override
+	public void decryptBlocks(final byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount) {
+		update(getDecryptor(), src, srcOff, dst, dstOff, blockCount * BLOCKSIZE);
+	}
+
+	// the provider reads and writes direct buffers itself
+	@Override
+	protected void encryptBuffer(ByteBuffer src, int srcIdx, ByteBuffer dst, int dstIdx, int blockCount) {
+		update(encryptor, src, srcIdx, dst, dstIdx, blockCount * BLOCKSIZE);
+	}
+
+	@Override
+	protected void decryptBuffer(ByteBuffer src, int srcIdx, ByteBuffer dst, int dstIdx, int blockCount) {
+		update(getDecryptor(), src, srcIdx, dst, dstIdx, blockCount * BLOCKSIZE);
+	}
+
+	private Cipher getDecryptor() {
+		if (decryptor == null) {
+			decryptor = newCipher(Cipher.DECRYPT_MODE);
+		}
+		return decryptor;
+	}
+
+	private static void update(Cipher cipher, final byte[] src, int srcOff, byte[] dst, int dstOff, int length) {
+		try {
+			cipher.update(src, srcOff, length, dst, dstOff);
+
+		} catch (ShortBufferException e) {
+			throw new IllegalArgumentException("wrong array length", e);
+		}
+	}
+
+	private static void update(Cipher cipher, ByteBuffer src, int srcIdx, ByteBuffer dst, int dstIdx, int length) {
+		try {
+			cipher.update(src.duplicate().limit(srcIdx + length).position(srcIdx), dst.duplicate().position(dstIdx));
+
+		} catch (ShortBufferException e) {
+			throw new IllegalArgumentException("wrong buffer length", e);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.hash;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import mockup.crypto.Hash;
+
+/**
+ * SHA-256 backed by the platform JCE provider
+ *
+ * HotSpot compiles the provider's compression function to the SHA extensions
+ * where the CPU supports them.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class JceSha256 extends Hash {
+
+	private static final int BLOCK_SIZE = 64;
+
+	private MessageDigest md;
+
+	public JceSha256() {
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	private JceSha256(MessageDigest md) {
+		this.md = md;
+	}
+
+	@Override
+	public String getName() {
+		return "SHA-256";
+	}
+
+	@Override
+	public int getBlockSize() {
+		return BLOCK_SIZE;
+	}
+
+	@Override
+	public int getOutputLength() {
+		return 32;
+	}
+
+	@Override
+	public void reset() {
+		md.reset();
+	}
+
+	@Override
+	public void update(byte[] msg) {
+		if (msg == null || msg.length == 0) {
+			return;
+		}
+
+		md.update(msg);
+	}
+
+	@Override
+	public void update(byte[] msg, int offset, int length) {
+		md.update(msg, offset, length);
+	}
+
+	@Override
+	public void update(ByteBuffer msg) {
+		md.update(msg);
+	}
+
+	@Override
+	public byte[] doFinal() {
+		return md.digest();
+	}
+
+	@Override
+	public JceSha256 copy() {
+		return new JceSha256(cloneOf(md));
+	}
+
+	@Override
+	public void restore(Hash source) {
+		if ((source instanceof JceSha256) == false) {
+			throw new IllegalArgumentException("Not a SHA-256 state: " + source.getClass().getSimpleName());
+		}
+
+		md = cloneOf(((JceSha256) source).md);
+	}
+
+	private static MessageDigest cloneOf(MessageDigest md) {
+		try {
+			return (MessageDigest) md.clone();
+
+		} catch (CloneNotSupportedException e) {
+			throw new UnsupportedOperationException("SHA-256 provider cannot copy its state", e);
+		}
+	}
+
+}
@@ -24,6 +24,7 @@
 
 package mockup.crypto.hash;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import mockup.crypto.Hash;
@@ -93,8 +94,11 @@ public class Sha256 extends Hash {
 			return;
 		}
 
-		int offset = 0;
-		int length = msg.length;
+		update(msg, 0, msg.length);
+	}
+
+	@Override
+	public void update(byte[] msg, int offset, int length) {
 		msgLength += length;
 
 		//  Ͽ  Ͱ ִ 
@@ -111,7 +115,6 @@ public class Sha256 extends Hash {
 			} else {
 				System.arraycopy(msg, offset, block, blockIdx, length);
 				blockIdx += length;
-				offset += gap;
 				length = 0;
 			}
 		}
@@ -132,6 +135,47 @@ public class Sha256 extends Hash {
 		}
 	}
 
+	// direct buffers are compressed in place; only a partial block is copied
+	@Override
+	public void update(ByteBuffer msg) {
+		if (msg.hasArray()) {
+			super.update(msg);
+			return;
+		}
+
+		int length = msg.remaining();
+		msgLength += length;
+
+		if (blockIdx > 0) {
+			int gap = Math.min(BLOCK_SIZE - blockIdx, length);
+			msg.get(block, blockIdx, gap);
+			blockIdx += gap;
+			length -= gap;
+
+			if (blockIdx < BLOCK_SIZE) {
+				return;
+			}
+
+			process(block, 0);
+			blockIdx = 0;
+		}
+
+		int offset = msg.position();
+		while (length >= BLOCK_SIZE) {
+			expand(msg, offset);
+			compress();
+
+			offset += BLOCK_SIZE;
+			length -= BLOCK_SIZE;
+		}
+		msg.position(offset);
+
+		if (length > 0) {
+			msg.get(block, 0, length);
+			blockIdx = length;
+		}
+	}
+
 	@Override
 	public byte[] doFinal() {
 		block[blockIdx++] = (byte) 0x80;
@@ -152,12 +196,35 @@ public class Sha256 extends Hash {
 		return digest;
 	}
 
+	@Override
+	public Sha256 copy() {
+		var copy = new Sha256();
+		copy.restore(this);
+		return copy;
+	}
+
+	@Override
+	public void restore(Hash source) {
+		if ((source instanceof Sha256) == false) {
+			throw new IllegalArgumentException("Not a SHA-256 state: " + source.getClass().getSimpleName());
+		}
+
+		var state = (Sha256) source;
+		System.arraycopy(state.chain, 0, chain, 0, chain.length);
+		System.arraycopy(state.block, 0, block, 0, block.length);
+		blockIdx = state.blockIdx;
+		msgLength = state.msgLength;
+	}
+
 	private void process(byte[] message, int offset) {
+		expand(message, offset);
+		compress();
+	}
+
+	private void compress() {
 		int[] imt = new int[chain.length];
 		System.arraycopy(chain, 0, imt, 0, chain.length);
 
-		expand(message, offset);
-
 		for (int t = 0; t < 64; ++t) {
 			int t1 = imt[7] + sum1(imt[4]) + ch(imt[4], imt[5], imt[6]) + CONSTANT[t] + W[t];
 			int t2 = sum0(imt[0]) + maj(imt[0], imt[1], imt[2]);
@@ -207,7 +274,17 @@ public class Sha256 extends Hash {
 
 	private void expand(byte[] message, int offset) {
 		DataConversions.bs2is_be(message, offset, W, 0, 16);
+		schedule();
+	}
+
+	private void expand(ByteBuffer message, int offset) {
+		for (int t = 0; t < 16; ++t) {
+			W[t] = DataConversions.bs2i_be(message, offset + (t << 2));
+		}
+		schedule();
+	}
 
+	private void schedule() {
 		for (int t = 16; t < 64; ++t) {
 			W[t] = sigma1(W[t - 2]) + W[t - 7] + sigma0(W[t - 15]) + W[t - 16];
 		}
@@ -0,0 +1,239 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mac;
+
+import java.util.Arrays;
+
+import mockup.crypto.BlockCipher;
+import mockup.crypto.ExpandedKey;
+import mockup.crypto.Mac;
+import mockup.crypto.util.ByteArray;
+
+/**
+ * CBC-MAC
+ *
+ * update xors the message straight into the chaining block and encrypts it
+ * once the next byte shows the block is not the last, so no block is copied
+ * aside. The last block goes through finish, which plain CBC-MAC leaves as it
+ * is and only accepts when it is whole; it is only secure for messages of one
+ * fixed length.
+ *
+ * doFinal(byte[][]) tags many messages in lanes: every step xors the next
+ * block of each busy lane into its chain and encrypts all chains with one
+ * encryptBlocks call.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class CbcMac extends Mac {
+
+	private static final int LANES = 8;
+
+	private final int tagLength;
+
+	protected BlockCipher cipher;
+	protected int blocksize;
+
+	// message bytes xored into chain since it was last encrypted
+	private byte[] chain;
+	private int pending;
+
+	// per lane: chaining block in batch, message index, next block and number of blocks
+	private byte[] batch;
+	private int[] laneMessage;
+	private int[] laneBlock;
+	private int[] laneBlocks;
+
+	public CbcMac() {
+		this(0);
+	}
+
+	// 0 takes the whole block as the tag
+	public CbcMac(int tagLength) {
+		if (tagLength != 0 && (tagLength < 4 || tagLength > 16)) {
+			throw new IllegalArgumentException("Unsupported tag length: " + tagLength);
+		}
+
+		this.tagLength = tagLength;
+	}
+
+	@Override
+	public String getName() {
+		return "CBC-MAC/" + cipher.getName();
+	}
+
+	@Override
+	public int getOutputLength() {
+		return tagLength == 0 ? blocksize : tagLength;
+	}
+
+	public void init(BlockCipher cipher, byte[] mk) {
+		cipher.init(mk);
+		init(cipher);
+	}
+
+	public void init(ExpandedKey key) {
+		init(key.newCipher());
+	}
+
+	protected void init(BlockCipher cipher) {
+		if (tagLength > cipher.getBlocksize()) {
+			throw new IllegalArgumentException("tag length exceeds blocksize: " + tagLength);
+		}
+
+		this.cipher = cipher;
+		blocksize = cipher.getBlocksize();
+
+		chain = new byte[blocksize];
+		pending = 0;
+
+		batch = new byte[LANES * blocksize];
+		laneMessage = new int[LANES];
+		laneBlock = new int[LANES];
+		laneBlocks = new int[LANES];
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(chain, (byte) 0);
+		pending = 0;
+	}
+
+	@Override
+	public void update(final byte[] msg, int offset, int length) {
+		while (length > 0) {
+			if (pending == blocksize) {
+				cipher.encryptBlock(chain, 0, chain, 0);
+				pending = 0;
+			}
+
+			var count = Math.min(blocksize - pending, length);
+			ByteArray.xor(chain, pending, chain, pending, msg, offset, count);
+
+			pending += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	@Override
+	public int doFinal(byte[] out, int outOff) {
+		var length = getOutputLength();
+
+		try {
+			finish(chain, 0, pending);
+			cipher.encryptBlock(chain, 0, chain, 0);
+			System.arraycopy(chain, 0, out, outOff, length);
+
+		} finally {
+			reset();
+		}
+
+		return length;
+	}
+
+	// block at offset holds the chain with the length bytes of the last block xored in
+	protected void finish(byte[] block, int offset, int length) {
+		if (length != blocksize) {
+			throw new IllegalArgumentException("CBC-MAC takes whole blocks only");
+		}
+	}
+
+	// one tag per message, the streaming state is left untouched
+	public byte[][] doFinal(final byte[][] msgs) {
+		var tags = new byte[msgs.length][];
+		var next = 0;
+		var active = 0;
+
+		while (true) {
+			while (active < LANES && next < msgs.length) {
+				start(active++, next++, msgs);
+			}
+
+			if (active == 0) {
+				return tags;
+			}
+
+			for (var lane = 0; lane < active; ++lane) {
+				gather(lane, msgs);
+			}
+
+			cipher.encryptBlocks(batch, 0, batch, 0, active);
+
+			// finished lanes are filled from the last busy one, so busy lanes stay in front
+			for (var lane = 0; lane < active; ++lane) {
+				if (++laneBlock[lane] < laneBlocks[lane]) {
+					continue;
+				}
+
+				tags[laneMessage[lane]] = Arrays.copyOfRange(batch, lane * blocksize,
+						lane * blocksize + getOutputLength());
+
+				--active;
+				laneMessage[lane] = laneMessage[active];
+				laneBlock[lane] = laneBlock[active];
+				laneBlocks[lane] = laneBlocks[active];
+				System.arraycopy(batch, active * blocksize, batch, lane * blocksize, blocksize);
+				--lane;
+			}
+		}
+	}
+
+	public boolean[] verify(final byte[][] msgs, final byte[][] tags) {
+		if (msgs.length != tags.length) {
+			throw new IllegalArgumentException("one tag per message: " + msgs.length + " != " + tags.length);
+		}
+
+		var computed = doFinal(msgs);
+		var results = new boolean[msgs.length];
+		for (var i = 0; i < msgs.length; ++i) {
+			results[i] = tags[i].length == computed[i].length
+					&& ByteArray.equalsConstantTime(computed[i], 0, tags[i], 0, tags[i].length);
+		}
+
+		return results;
+	}
+
+	private void start(int lane, int msg, final byte[][] msgs) {
+		laneMessage[lane] = msg;
+		laneBlock[lane] = 0;
+		laneBlocks[lane] = Math.max(1, (msgs[msg].length + blocksize - 1) / blocksize);
+		Arrays.fill(batch, lane * blocksize, (lane + 1) * blocksize, (byte) 0);
+	}
+
+	// the next block of a lane xored into its chain, finished if it is the last
+	private void gather(int lane, final byte[][] msgs) {
+		var src = msgs[laneMessage[lane]];
+		var block = laneBlock[lane];
+		var pos = lane * blocksize;
+		var length = Math.min(blocksize, src.length - block * blocksize);
+
+		ByteArray.xor(batch, pos, batch, pos, src, block * blocksize, length);
+
+		if (block == laneBlocks[lane] - 1) {
+			finish(batch, pos, length);
+		}
+	}
+}
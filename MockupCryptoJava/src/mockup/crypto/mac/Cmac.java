@@ -0,0 +1,102 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mac;
+
+import mockup.crypto.BlockCipher;
+import mockup.crypto.util.ByteArray;
+
+/**
+ * CMAC (NIST SP 800-38B)
+ *
+ * CBC-MAC whose last block is xored with subkey K1 when it is whole, or padded
+ * with 10* and xored with K2 otherwise. Both subkeys are derived once in init,
+ * so messages of any length cost one cipher call per block.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class Cmac extends CbcMac {
+
+	private byte[] k1;
+	private byte[] k2;
+
+	public Cmac() {
+		super();
+	}
+
+	public Cmac(int tagLength) {
+		super(tagLength);
+	}
+
+	@Override
+	public String getName() {
+		return "CMAC/" + cipher.getName();
+	}
+
+	@Override
+	protected void init(BlockCipher cipher) {
+		super.init(cipher);
+
+		byte rb;
+		if (blocksize == 16) {
+			rb = (byte) 0x87;
+
+		} else if (blocksize == 8) {
+			rb = (byte) 0x1b;
+
+		} else {
+			throw new IllegalArgumentException("Unsupported blocksize: " + blocksize);
+		}
+
+		k1 = new byte[blocksize];
+		cipher.encryptBlock(k1, 0, k1, 0);
+		doubling(k1, rb);
+
+		k2 = k1.clone();
+		doubling(k2, rb);
+	}
+
+	// multiplication by x in GF(2^n), the block read big-endian
+	private static void doubling(byte[] block, byte rb) {
+		// the reduction is masked rather than branched on, the subkeys are secret
+		var mask = -((block[0] & 0xff) >>> 7);
+
+		for (var i = 0; i < block.length - 1; ++i) {
+			block[i] = (byte) ((block[i] << 1) | ((block[i + 1] & 0xff) >>> 7));
+		}
+		block[block.length - 1] = (byte) ((block[block.length - 1] << 1) ^ (rb & mask));
+	}
+
+	@Override
+	protected void finish(byte[] block, int offset, int length) {
+		if (length == blocksize) {
+			ByteArray.xor(block, offset, block, offset, k1, 0, blocksize);
+			return;
+		}
+
+		block[offset + length] ^= (byte) 0x80;
+		ByteArray.xor(block, offset, block, offset, k2, 0, blocksize);
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mac;
+
+import java.util.Arrays;
+
+import mockup.crypto.Hash;
+import mockup.crypto.Mac;
+
+/**
+ * HMAC (RFC 2104) over any Hash
+ *
+ * The key xored with ipad and opad is absorbed once, at init, into an inner
+ * and an outer hash state. Each message starts from a copy of those states,
+ * so it costs the inner and outer hash and no key processing. A hash that
+ * cannot copy its state hashes the two pad blocks again for every message.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class Hmac extends Mac {
+
+	private static final byte IPAD = 0x36;
+	private static final byte OPAD = 0x5c;
+
+	private final Hash hash;
+
+	private byte[] innerKey;
+	private byte[] outerKey;
+
+	// the hash right after the pad blocks, or null when it cannot copy its state
+	private Hash innerState;
+	private Hash outerState;
+
+	public Hmac(Hash hash) {
+		this.hash = hash;
+	}
+
+	@Override
+	public String getName() {
+		return "HMAC-" + hash.getName();
+	}
+
+	@Override
+	public int getOutputLength() {
+		return hash.getOutputLength();
+	}
+
+	public void init(byte[] key) {
+		var blockSize = hash.getBlockSize();
+
+		if (key.length > blockSize) {
+			hash.reset();
+			key = hash.doFinal(key);
+		}
+
+		innerKey = Arrays.copyOf(key, blockSize);
+		outerKey = Arrays.copyOf(key, blockSize);
+		for (var i = 0; i < blockSize; ++i) {
+			innerKey[i] ^= IPAD;
+			outerKey[i] ^= OPAD;
+		}
+
+		try {
+			hash.reset();
+			hash.update(innerKey);
+			innerState = hash.copy();
+
+			hash.reset();
+			hash.update(outerKey);
+			outerState = hash.copy();
+
+		} catch (UnsupportedOperationException e) {
+			innerState = null;
+			outerState = null;
+		}
+
+		reset();
+	}
+
+	@Override
+	public void reset() {
+		if (innerKey == null) {
+			throw new IllegalStateException("HMAC key is not set");
+		}
+
+		if (innerState != null) {
+			hash.restore(innerState);
+			return;
+		}
+
+		hash.reset();
+		hash.update(innerKey);
+	}
+
+	@Override
+	public void update(final byte[] msg, int offset, int length) {
+		hash.update(msg, offset, length);
+	}
+
+	@Override
+	public int doFinal(byte[] out, int outOff) {
+		var inner = hash.doFinal();
+
+		if (outerState != null) {
+			hash.restore(outerState);
+
+		} else {
+			hash.update(outerKey);
+		}
+
+		hash.update(inner);
+		var tag = hash.doFinal();
+		System.arraycopy(tag, 0, out, outOff, tag.length);
+
+		reset();
+		return tag.length;
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mode;
+
+import mockup.crypto.block_cipher.AesKey;
+
+/**
+ * Direction-specialized AES modes
+ *
+ * Each processor is a final class bound to the T-table AES of the key, for hot
+ * loops over whole blocks. The BufferedBlockCipher modes stay the API for
+ * partial blocks, padding, buffers and the other engines.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public final class AesModes {
+
+	private AesModes() {
+	}
+
+	public static EcbEncryptor ecbEncryptor(AesKey key) {
+		return new EcbEncryptor(key.newCipher());
+	}
+
+	public static EcbDecryptor ecbDecryptor(AesKey key) {
+		return new EcbDecryptor(key.newCipher());
+	}
+
+	public static CbcEncryptor cbcEncryptor(AesKey key, byte[] iv) {
+		return new CbcEncryptor(key.newCipher(), checkIv(iv));
+	}
+
+	public static CbcDecryptor cbcDecryptor(AesKey key, byte[] iv) {
+		return new CbcDecryptor(key.newCipher(), checkIv(iv));
+	}
+
+	public static CfbEncryptor cfbEncryptor(AesKey key, byte[] iv) {
+		return new CfbEncryptor(key.newCipher(), checkIv(iv));
+	}
+
+	public static CfbDecryptor cfbDecryptor(AesKey key, byte[] iv) {
+		return new CfbDecryptor(key.newCipher(), checkIv(iv));
+	}
+
+	// a 128-bit counter
+	public static CtrEncryptor ctr(AesKey key, byte[] counter) {
+		return new CtrEncryptor(key.newCipher(), new CounterBlock(128, checkIv(counter)));
+	}
+
+	private static byte[] checkIv(byte[] iv) {
+		if (iv == null || iv.length != CounterBlock.BLOCKSIZE) {
+			throw new IllegalArgumentException("Unsupported iv length");
+		}
+
+		return iv.clone();
+	}
+}
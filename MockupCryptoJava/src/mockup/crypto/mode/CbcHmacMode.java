@@ -0,0 +1,396 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import mockup.crypto.BlockCipher;
+import mockup.crypto.ExpandedKey;
+import mockup.crypto.Hash;
+import mockup.crypto.Padding;
+import mockup.crypto.hash.Sha256;
+import mockup.crypto.mac.Hmac;
+import mockup.crypto.util.ByteArray;
+
+/**
+ * CBC encrypt-then-MAC in one pass
+ *
+ * The output is the CBC ciphertext followed by an HMAC of that ciphertext,
+ * keyed separately. Blocks are encrypted and hashed TILE_SIZE bytes at a time,
+ * so each tile of ciphertext is hashed while it is still in cache. The iv is
+ * not covered by the tag.
+ *
+ * A whole message is decrypted by decrypt, or doFinal(byte[]) on a fresh
+ * message, in two passes: the ciphertext is hashed and the tag checked first,
+ * then it is decrypted straight into the output, so no plaintext is held.
+ *
+ * Streamed decryption hashes each tile before decrypting it, and keeps the
+ * trailing tag bytes and the plaintext back, so it needs memory for the whole
+ * plaintext. Only doFinal puts the plaintext out, after the tag has matched and
+ * before the padding is looked at; a mismatch throws InvalidTagException and
+ * wipes it. update therefore writes nothing while decrypting.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class CbcHmacMode extends CbcMode {
+
+	// bytes encrypted and hashed per pass, well within L1
+	private static final int TILE_SIZE = 4096;
+
+	private final Hmac hmac;
+	private final int tagLength;
+
+	private Padding padding;
+	private boolean isMacKeySet;
+
+	private byte[] lastBlock;
+	private byte[] tag;
+	private byte[] tile;
+
+	// trailing bytes of the input that may turn out to be the tag
+	private byte[] tagBuffer;
+	private int tagOffset;
+
+	// plaintext kept back until the tag is verified
+	private byte[] held = new byte[0];
+	private int heldLength;
+
+	public CbcHmacMode() {
+		this(new Sha256());
+	}
+
+	public CbcHmacMode(Hash hash) {
+		hmac = new Hmac(hash);
+		tagLength = hmac.getOutputLength();
+	}
+
+	@Override
+	public String getName() {
+		return "CBC/" + cipher.getName() + "+" + hmac.getName();
+	}
+
+	public int getTagLength() {
+		return tagLength;
+	}
+
+	public void init(CipherMode mode, BlockCipher cipher, byte[] mk, byte[] macKey, byte[] iv) {
+		setMacKey(macKey);
+		init(mode, cipher, mk, iv);
+	}
+
+	public void init(CipherMode mode, ExpandedKey key, byte[] macKey, byte[] iv) {
+		setMacKey(macKey);
+		init(mode, key, iv);
+	}
+
+	private void setMacKey(byte[] macKey) {
+		hmac.init(macKey);
+		isMacKeySet = true;
+	}
+
+	@Override
+	public void setPadding(Padding padding) {
+		super.setPadding(padding);
+		this.padding = padding;
+	}
+
+	@Override
+	protected void init(byte[] iv) {
+		if (isMacKeySet == false) {
+			throw new IllegalStateException("init with a MAC key first");
+		}
+
+		super.init(iv);
+
+		lastBlock = new byte[blocksize];
+		tag = new byte[tagLength];
+		tile = new byte[TILE_SIZE];
+		tagBuffer = new byte[tagLength];
+		tagOffset = 0;
+		heldLength = 0;
+
+		hmac.reset();
+	}
+
+	@Override
+	protected void restoreToInitialState() {
+		super.restoreToInitialState();
+
+		hmac.reset();
+		Arrays.fill(lastBlock, (byte) 0);
+		Arrays.fill(tag, (byte) 0);
+		Arrays.fill(tagBuffer, (byte) 0);
+		Arrays.fill(held, 0, heldLength, (byte) 0);
+		tagOffset = 0;
+		heldLength = 0;
+	}
+
+	@Override
+	public void updateBlock(byte[] src, int srcpos, byte[] dst, int dstpos) {
+		updateBlocks(src, srcpos, dst, dstpos, 1);
+	}
+
+	// the MAC always runs over the ciphertext, so it goes after encryption and
+	// before decryption, which may be in place
+	@Override
+	public void updateBlocks(byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		var tileBlocks = TILE_SIZE / blocksize;
+
+		while (count > 0) {
+			var batch = Math.min(count, tileBlocks);
+			var length = batch * blocksize;
+
+			if (cipherMode == CipherMode.ENCRYPT) {
+				super.updateBlocks(src, srcpos, dst, dstpos, batch);
+				hmac.update(dst, dstpos, length);
+
+			} else {
+				hmac.update(src, srcpos, length);
+				super.updateBlocks(src, srcpos, dst, dstpos, batch);
+			}
+
+			srcpos += length;
+			dstpos += length;
+			count -= batch;
+		}
+	}
+
+	// decryption holds the last tagLength bytes back as in GcmMode, and puts the
+	// plaintext into held instead of dst
+	@Override
+	protected int process(final byte[] msg, int msgpos, int length, byte[] dst, int dstpos) {
+		if (cipherMode == CipherMode.ENCRYPT) {
+			return super.process(msg, msgpos, length, dst, dstpos);
+		}
+
+		var release = Math.max(0, tagOffset + length - tagLength);
+		var fromTag = Math.min(release, tagOffset);
+		var fromMsg = release - fromTag;
+
+		reserve(offset + release);
+
+		if (fromTag > 0) {
+			heldLength += super.process(tagBuffer, 0, fromTag, held, heldLength);
+			System.arraycopy(tagBuffer, fromTag, tagBuffer, 0, tagOffset - fromTag);
+			tagOffset -= fromTag;
+		}
+
+		if (fromMsg > 0) {
+			heldLength += super.process(msg, msgpos, fromMsg, held, heldLength);
+		}
+
+		System.arraycopy(msg, msgpos + fromMsg, tagBuffer, tagOffset, length - fromMsg);
+		tagOffset += length - fromMsg;
+
+		return 0;
+	}
+
+	@Override
+	protected int process(ByteBuffer src, ByteBuffer dst) {
+		if (cipherMode == CipherMode.ENCRYPT) {
+			return super.process(src, dst);
+		}
+
+		while (src.hasRemaining()) {
+			var length = Math.min(src.remaining(), tile.length);
+			src.get(tile, 0, length);
+			process(tile, 0, length, null, 0);
+		}
+
+		return 0;
+	}
+
+	private void reserve(int length) {
+		if (held.length - heldLength < length) {
+			held = Arrays.copyOf(held, Math.max(heldLength + length, held.length * 2));
+		}
+	}
+
+	@Override
+	protected int getUpdateLength(int length) {
+		return cipherMode == CipherMode.ENCRYPT ? super.getUpdateLength(length) : 0;
+	}
+
+	@Override
+	public int getOutputSize(int length) {
+		if (cipherMode == CipherMode.ENCRYPT) {
+			return super.getOutputSize(length) + tagLength;
+		}
+
+		return heldLength + Math.max(0, offset + tagOffset + length - tagLength);
+	}
+
+	// verifies the tag over in, then decrypts it into out; nothing may be pending from update
+	public int decrypt(final byte[] in, int inOff, int inLength, byte[] out, int outOff) {
+		if (cipherMode != CipherMode.DECRYPT || offset > 0 || tagOffset > 0 || heldLength > 0) {
+			throw new IllegalStateException("decrypt takes a whole message in decryption mode");
+		}
+
+		var length = Math.max(0, inLength - tagLength);
+		checkOutputSpace(out, outOff, length);
+
+		try {
+			hmac.update(in, inOff, length);
+			hmac.doFinal(tag, 0);
+
+			var isWhole = inLength >= tagLength && length % blocksize == 0;
+
+			if ((ByteArray.equalsConstantTime(tag, 0, in, inOff + length, Math.min(inLength, tagLength))
+					&& isWhole) == false) {
+				throw new InvalidTagException("tag mismatch");
+			}
+
+			var count = length / blocksize;
+			if (padding == null) {
+				super.updateBlocks(in, inOff, out, outOff, count);
+				return length;
+			}
+
+			// an empty message, only valid for a padding that adds nothing to it
+			if (count == 0) {
+				return padding.unpad(lastBlock, 0, 0);
+			}
+
+			super.updateBlocks(in, inOff, out, outOff, count - 1);
+
+			var last = (count - 1) * blocksize;
+			super.updateBlocks(in, inOff + last, lastBlock, 0, 1);
+			var tail = padding.unpad(lastBlock, 0, blocksize);
+			System.arraycopy(lastBlock, 0, out, outOff + last, tail);
+
+			return last + tail;
+
+		} finally {
+			reset();
+		}
+	}
+
+	@Override
+	public byte[] doFinal(final byte[] msg) {
+		if (cipherMode == CipherMode.ENCRYPT || msg == null || offset > 0 || tagOffset > 0 || heldLength > 0) {
+			return super.doFinal(msg);
+		}
+
+		var out = new byte[Math.max(0, msg.length - tagLength)];
+		var written = decrypt(msg, 0, msg.length, out, 0);
+
+		return written == out.length ? out : Arrays.copyOf(out, written);
+	}
+
+	@Override
+	public int doFinal(ByteBuffer src, ByteBuffer dst) {
+		if (cipherMode == CipherMode.ENCRYPT) {
+			return super.doFinal(src, dst);
+		}
+
+		try {
+			reserve(getOutputSize(src.remaining()) - heldLength);
+			update(src, dst);
+
+			var length = finishDecrypt();
+			if (dst.remaining() < heldLength + length) {
+				throw new IllegalArgumentException("output buffer is too short: " + dst.remaining() + " < "
+						+ (heldLength + length));
+			}
+
+			dst.put(held, 0, heldLength);
+			dst.put(lastBlock, 0, length);
+
+			return heldLength + length;
+
+		} finally {
+			reset();
+		}
+	}
+
+	@Override
+	public int doFinal(byte[] out, int outOff) {
+		checkOutputSpace(out, outOff, getOutputSize(0));
+
+		try {
+			if (cipherMode == CipherMode.ENCRYPT) {
+				return doFinalEncrypt(out, outOff);
+			}
+
+			return doFinalDecrypt(out, outOff);
+
+		} finally {
+			reset();
+		}
+	}
+
+	private int doFinalEncrypt(byte[] out, int outOff) {
+		var length = 0;
+
+		if (padding != null) {
+			System.arraycopy(buffer, 0, lastBlock, 0, offset);
+			length = padding.pad(lastBlock, 0, offset);
+			if (length > 0) {
+				updateBlock(lastBlock, 0, out, outOff);
+			}
+
+		} else if (offset > 0) {
+			throw new IllegalArgumentException("CBC without a padding takes whole blocks only");
+		}
+
+		return length + hmac.doFinal(out, outOff + length);
+	}
+
+	private int doFinalDecrypt(byte[] out, int outOff) {
+		var length = finishDecrypt();
+
+		System.arraycopy(held, 0, out, outOff, heldLength);
+		System.arraycopy(lastBlock, 0, out, outOff + heldLength, length);
+
+		return heldLength + length;
+	}
+
+	// verifies the tag and leaves the unpadded last block in lastBlock, returning its length
+	private int finishDecrypt() {
+		// a padded message keeps its last block in buffer, which is still to be hashed
+		var isWhole = tagOffset == tagLength && (offset == 0 || (padding != null && offset == blocksize));
+
+		hmac.update(buffer, 0, offset);
+		hmac.doFinal(tag, 0);
+
+		if ((ByteArray.equalsConstantTime(tag, 0, tagBuffer, 0, tagLength) && isWhole) == false) {
+			throw new InvalidTagException("tag mismatch");
+		}
+
+		var length = 0;
+		if (padding != null && offset > 0) {
+			super.updateBlocks(buffer, 0, lastBlock, 0, 1);
+			length = padding.unpad(lastBlock, 0, blocksize);
+
+		} else if (padding != null) {
+			// an empty message, only valid for a padding that adds nothing to it
+			length = padding.unpad(lastBlock, 0, 0);
+		}
+
+		return length;
+	}
+}
@@ -26,14 +26,18 @@ package mockup.crypto.mode;
 
 import java.util.Arrays;
 
+import mockup.crypto.BlockCipher;
 import mockup.crypto.BufferedBlockCipher;
 import mockup.crypto.util.ByteArray;
 
 public class CbcMode extends BufferedBlockCipher {
 
+	private static final int BATCH_BLOCKS = 8;
+
 	private byte[] initialIv;
 	private byte[] workingIv;
 	private byte[] xorbuffer;
+	private byte[] decrypted;
 
 	@Override
 	public String getName() {
@@ -43,6 +47,7 @@ public class CbcMode extends BufferedBlockCipher {
 	@Override
 	protected void restoreToInitialState() {
 		Arrays.fill(xorbuffer, (byte) 0);
+		Arrays.fill(decrypted, (byte) 0);
 		System.arraycopy(initialIv, 0, workingIv, 0, blocksize);
 	}
 
@@ -51,17 +56,21 @@ public class CbcMode extends BufferedBlockCipher {
 		xorbuffer = new byte[blocksize];
 		initialIv = new byte[blocksize];
 		workingIv = new byte[blocksize];
+		decrypted = new byte[BATCH_BLOCKS * blocksize];
 
 		System.arraycopy(iv, 0, initialIv, 0, blocksize);
 		System.arraycopy(iv, 0, workingIv, 0, blocksize);
 	}
 
+	@Override
+	protected void loadIv(byte[] iv) {
+		System.arraycopy(iv, 0, initialIv, 0, blocksize);
+	}
+
 	@Override
 	public void updateBlock(byte[] src, int srcpos, byte[] dst, int dstpos) {
 		if (cipherMode == CipherMode.ENCRYPT) {
-			ByteArray.xor(xorbuffer, 0, workingIv, 0, src, srcpos, blocksize);
-			cipher.encryptBlock(xorbuffer, 0, workingIv, 0);
-			System.arraycopy(workingIv, 0, dst, dstpos, blocksize);
+			encryptBlock(src, srcpos, dst, dstpos);
 
 		} else {
 			cipher.decryptBlock(src, srcpos, xorbuffer, 0);
@@ -69,4 +78,58 @@ public class CbcMode extends BufferedBlockCipher {
 			System.arraycopy(src, srcpos, workingIv, 0, blocksize);
 		}
 	}
+
+	@Override
+	public void updateBlocks(byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		if (cipherMode == CipherMode.ENCRYPT) {
+			encryptBlocks(src, srcpos, dst, dstpos, count);
+			return;
+		}
+
+		if (isParallel(src, srcpos, dst, dstpos, count)) {
+			processParallel(src, srcpos, count, workingIv, (cipher, from, to, chain) -> {
+				var skip = from * blocksize;
+				var scratch = new byte[BATCH_BLOCKS * blocksize];
+
+				decryptBlocks(cipher, src, srcpos + skip, dst, dstpos + skip, to - from, chain, scratch);
+			});
+			return;
+		}
+
+		decryptBlocks(cipher, src, srcpos, dst, dstpos, count, workingIv, decrypted);
+	}
+
+	// not through updateBlock, so subclasses may extend updateBlock with updateBlocks
+	private void encryptBlocks(byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		for (var i = 0; i < count; ++i, srcpos += blocksize, dstpos += blocksize) {
+			encryptBlock(src, srcpos, dst, dstpos);
+		}
+	}
+
+	private void encryptBlock(byte[] src, int srcpos, byte[] dst, int dstpos) {
+		ByteArray.xor(xorbuffer, 0, workingIv, 0, src, srcpos, blocksize);
+		cipher.encryptBlock(xorbuffer, 0, workingIv, 0);
+		System.arraycopy(workingIv, 0, dst, dstpos, blocksize);
+	}
+
+	// leaves the last ciphertext block in chain
+	private void decryptBlocks(BlockCipher cipher, final byte[] src, int srcpos, byte[] dst, int dstpos, int count,
+			byte[] chain, byte[] scratch) {
+
+		while (count > 0) {
+			var batch = Math.min(count, BATCH_BLOCKS);
+			var length = batch * blocksize;
+
+			// the whole batch is read before dst is written, so src and dst may overlap
+			cipher.decryptBlocks(src, srcpos, scratch, 0, batch);
+			ByteArray.xor(scratch, 0, scratch, 0, chain, 0, blocksize);
+			ByteArray.xor(scratch, blocksize, scratch, blocksize, src, srcpos, length - blocksize);
+			System.arraycopy(src, srcpos + length - blocksize, chain, 0, blocksize);
+			System.arraycopy(scratch, 0, dst, dstpos, length);
+
+			srcpos += length;
+			dstpos += length;
+			count -= batch;
+		}
+	}
 }
@@ -0,0 +1,53 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mode;
+
+import mockup.crypto.block_cipher.AesTable;
+import mockup.crypto.util.ByteArray;
+
+// full-block feedback only
+public final class CfbDecryptor implements BlockProcessor {
+
+	private static final int BLOCKSIZE = 16;
+
+	private final AesTable cipher;
+	private final byte[] chain;
+	private final byte[] keystream = new byte[BLOCKSIZE];
+
+	// chain is the iv and is updated in place
+	CfbDecryptor(AesTable cipher, byte[] chain) {
+		this.cipher = cipher;
+		this.chain = chain;
+	}
+
+	@Override
+	public void process(final byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		for (var i = 0; i < count; ++i, srcpos += BLOCKSIZE, dstpos += BLOCKSIZE) {
+			cipher.encryptBlock(chain, 0, keystream, 0);
+			System.arraycopy(src, srcpos, chain, 0, BLOCKSIZE);
+			ByteArray.xor(dst, dstpos, chain, 0, keystream, 0, BLOCKSIZE);
+		}
+	}
+}
@@ -26,15 +26,19 @@ package mockup.crypto.mode;
 
 import java.util.Arrays;
 
+import mockup.crypto.BlockCipher;
 import mockup.crypto.BufferedBlockCipher;
 import mockup.crypto.util.ByteArray;
 
 public class CfbMode extends BufferedBlockCipher {
 
+	private static final int BATCH_BLOCKS = 8;
+
 	private byte[] initialIv;
 	private byte[] workingIv;
 	private byte[] keystream;
 	private byte[] processed;
+	private byte[] batchKeystream;
 
 	@Override
 	public String getName() {
@@ -43,9 +47,8 @@ public class CfbMode extends BufferedBlockCipher {
 
 	@Override
 	protected void restoreToInitialState() {
+		// the keystream and scratch blocks are always rewritten before they are read
 		System.arraycopy(initialIv, 0, workingIv, 0, initialIv.length);
-		Arrays.fill(keystream, (byte) 0);
-		Arrays.fill(processed, (byte) 0);
 	}
 
 	@Override
@@ -55,11 +58,34 @@ public class CfbMode extends BufferedBlockCipher {
 		workingIv = new byte[blocksize];
 		keystream = new byte[blocksize];
 		processed = new byte[blocksize];
+		batchKeystream = new byte[BATCH_BLOCKS * blocksize];
 
 		System.arraycopy(iv, 0, initialIv, 0, iv.length);
 		System.arraycopy(iv, 0, workingIv, 0, iv.length);
 	}
 
+	@Override
+	protected void loadIv(byte[] iv) {
+		Arrays.fill(initialIv, (byte) 0);
+		System.arraycopy(iv, 0, initialIv, 0, iv.length);
+	}
+
+	@Override
+	protected boolean isStreamMode() {
+		return true;
+	}
+
+	@Override
+	protected void nextKeystream(byte[] keystream) {
+		cipher.encryptBlock(workingIv, 0, keystream, 0);
+	}
+
+	// the same register update as updateBlock
+	@Override
+	protected void feedback(final byte[] ciphertext) {
+		System.arraycopy(ciphertext, 0, workingIv, blocksize - shift, shift);
+	}
+
 	@Override
 	public void updateBlock(byte[] src, int srcpos, byte[] dst, int dstpos) {
 		cipher.encryptBlock(workingIv, 0, keystream, 0);
@@ -73,4 +99,46 @@ public class CfbMode extends BufferedBlockCipher {
 			System.arraycopy(src, srcpos, workingIv, blocksize - shift, shift);
 		}
 	}
+
+	// full-block decryption only depends on ciphertext, so it takes the multi-block path
+	@Override
+	public void updateBlocks(byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		if (cipherMode == CipherMode.ENCRYPT || shift != blocksize) {
+			super.updateBlocks(src, srcpos, dst, dstpos, count);
+			return;
+		}
+
+		if (isParallel(src, srcpos, dst, dstpos, count)) {
+			processParallel(src, srcpos, count, workingIv, (cipher, from, to, chain) -> {
+				var skip = from * blocksize;
+				var scratch = new byte[BATCH_BLOCKS * blocksize];
+
+				decryptBlocks(cipher, src, srcpos + skip, dst, dstpos + skip, to - from, chain, scratch);
+			});
+			return;
+		}
+
+		decryptBlocks(cipher, src, srcpos, dst, dstpos, count, workingIv, batchKeystream);
+	}
+
+	// leaves the last ciphertext block in chain
+	private void decryptBlocks(BlockCipher cipher, final byte[] src, int srcpos, byte[] dst, int dstpos, int count,
+			byte[] chain, byte[] scratch) {
+
+		while (count > 0) {
+			var batch = Math.min(count, BATCH_BLOCKS);
+			var length = batch * blocksize;
+
+			// the keystream is read off the ciphertext before dst may overwrite it
+			cipher.encryptBlock(chain, 0, scratch, 0);
+			cipher.encryptBlocks(src, srcpos, scratch, blocksize, batch - 1);
+			System.arraycopy(src, srcpos + length - blocksize, chain, 0, blocksize);
+
+			ByteArray.xor(dst, dstpos, src, srcpos, scratch, 0, length);
+
+			srcpos += length;
+			dstpos += length;
+			count -= batch;
+		}
+	}
 }
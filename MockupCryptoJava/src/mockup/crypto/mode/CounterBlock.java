@@ -0,0 +1,91 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mode;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+// a big-endian 128-bit counter block held in two longs; only the low width bits
+// count, modulo 2^width, and the bits above them stay fixed
+final class CounterBlock {
+
+	static final int BLOCKSIZE = 16;
+
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+	private final int width;
+	private final long mask;
+	private long hi;
+	private long lo;
+
+	CounterBlock(int width, byte[] block) {
+		this.width = width;
+		this.mask = width >= 64 ? -1L : (1L << width) - 1;
+		load(block);
+	}
+
+	private CounterBlock(CounterBlock other) {
+		this.width = other.width;
+		this.mask = other.mask;
+		set(other);
+	}
+
+	CounterBlock copy() {
+		return new CounterBlock(this);
+	}
+
+	void load(byte[] block) {
+		hi = (long) LONGS.get(block, 0);
+		lo = (long) LONGS.get(block, 8);
+	}
+
+	void set(CounterBlock other) {
+		hi = other.hi;
+		lo = other.lo;
+	}
+
+	void add(long value) {
+		if (width == 128) {
+			var sum = lo + value;
+			if (Long.compareUnsigned(sum, lo) < 0) {
+				hi += 1;
+			}
+			lo = sum;
+
+		} else {
+			lo = (lo & ~mask) | ((lo + value) & mask);
+		}
+	}
+
+	// writes count consecutive counter blocks and steps past them
+	void fill(byte[] dst, int count) {
+		for (var pos = 0; pos < count * BLOCKSIZE; pos += BLOCKSIZE) {
+			LONGS.set(dst, pos, hi);
+			LONGS.set(dst, pos + 8, lo);
+			add(1);
+		}
+	}
+}
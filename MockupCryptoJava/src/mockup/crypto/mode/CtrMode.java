@@ -24,57 +24,205 @@
 
 package mockup.crypto.mode;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 import mockup.crypto.BufferedBlockCipher;
 import mockup.crypto.util.ByteArray;
 
+/**
+ * Counter mode
+ *
+ * The 128-bit counter block is held as two longs. Only its low counterWidth
+ * bits are incremented, so the upper bits may carry a nonce: 128 counts over
+ * the whole block, 64 and 32 leave a 64-bit or 96-bit nonce as in RFC 3686 and
+ * GCM. Keystream is generated BATCH_BLOCKS at a time and xored in one pass.
+ *
+ * @author ilwoong.jeong
+ *
+ */
 public class CtrMode extends BufferedBlockCipher {
 
-	private byte[] initialCounter;
-	private byte[] workingCounter;
+	private static final int BLOCKSIZE = CounterBlock.BLOCKSIZE;
+	private static final int BATCH_BLOCKS = 32;
+
+	private final int counterWidth;
+
+	private CounterBlock initialCounter;
+	private CounterBlock workingCounter;
+	private CounterBlock positionCounter;
+	private byte[] counters;
 	private byte[] keystream;
 
+	public CtrMode() {
+		this(128);
+	}
+
+	public CtrMode(int counterWidth) {
+		if (counterWidth != 32 && counterWidth != 64 && counterWidth != 128) {
+			throw new IllegalArgumentException("Unsupported counter width: " + counterWidth);
+		}
+
+		this.counterWidth = counterWidth;
+	}
+
 	@Override
 	public String getName() {
 		return "CTR/" + cipher.getName();
 	}
 
+	public int getCounterWidth() {
+		return counterWidth;
+	}
+
 	@Override
 	protected void restoreToInitialState() {
-		System.arraycopy(initialCounter, 0, workingCounter, 0, blocksize);
-		Arrays.fill(keystream, (byte) 0);
+		// the keystream batch is always rewritten before it is read
+		workingCounter.set(initialCounter);
 	}
 
 	@Override
 	protected void init(byte[] iv) {
+		if (blocksize != BLOCKSIZE) {
+			throw new IllegalArgumentException("Unsupported blocksize: " + blocksize);
+		}
+
+		checkCounter(iv);
+
+		counters = new byte[BATCH_BLOCKS * blocksize];
+		keystream = new byte[BATCH_BLOCKS * blocksize];
+
+		initialCounter = new CounterBlock(counterWidth, iv);
+		workingCounter = new CounterBlock(counterWidth, iv);
+		positionCounter = new CounterBlock(counterWidth, iv);
+	}
+
+	private void checkCounter(byte[] iv) {
 		if (iv == null || iv.length != blocksize) {
 			throw new IllegalArgumentException("Unsupported initial counter length");
 		}
+	}
 
-		keystream = new byte[blocksize];
+	@Override
+	protected void loadIv(byte[] iv) {
+		checkCounter(iv);
+		initialCounter.load(iv);
+	}
 
-		initialCounter = new byte[blocksize];
-		workingCounter = new byte[blocksize];
-		System.arraycopy(iv, 0, initialCounter, 0, blocksize);
-		System.arraycopy(iv, 0, workingCounter, 0, blocksize);
+	@Override
+	protected boolean isStreamMode() {
+		return true;
+	}
+
+	@Override
+	protected void nextKeystream(byte[] keystream) {
+		workingCounter.fill(counters, 1);
+		cipher.encryptBlock(counters, 0, keystream, 0);
 	}
 
 	@Override
 	public void updateBlock(byte[] src, int srcpos, byte[] dst, int dstpos) {
-		cipher.encryptBlock(workingCounter, 0, keystream, 0);
+		workingCounter.fill(counters, 1);
+		cipher.encryptBlock(counters, 0, keystream, 0);
 		ByteArray.xor(dst, dstpos, src, srcpos, keystream, 0, blocksize);
-		increaseCounter();
 	}
 
-	private void increaseCounter() {
-		var idx = workingCounter.length - 1;
-		while (++workingCounter[idx] == 0) {
-			idx -= 1;
+	@Override
+	public void updateBlocks(byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		if (isParallel(src, srcpos, dst, dstpos, count)) {
+			updateBlocksParallel(src, srcpos, dst, dstpos, count);
+			return;
+		}
+
+		while (count > 0) {
+			var batch = Math.min(count, BATCH_BLOCKS);
+			var length = batch * blocksize;
+
+			workingCounter.fill(counters, batch);
+			cipher.encryptBlocks(counters, 0, keystream, 0, batch);
+			ByteArray.xor(dst, dstpos, src, srcpos, keystream, 0, length);
+
+			srcpos += length;
+			dstpos += length;
+			count -= batch;
+		}
+	}
+
+	// random access: processes length bytes found at byte position of the stream
+	// started by init, leaving the streaming state untouched
+	public void process(long position, final byte[] src, int srcOff, byte[] dst, int dstOff, int length) {
+		if (position < 0) {
+			throw new IllegalArgumentException("negative position: " + position);
+		}
 
-			if (idx < 0) {
-				idx = workingCounter.length - 1;
+		positionCounter.set(initialCounter);
+		positionCounter.add(position / blocksize);
+
+		var skip = (int) (position % blocksize);
+
+		while (length > 0) {
+			var batch = Math.min(BATCH_BLOCKS, (skip + length + blocksize - 1) / blocksize);
+
+			positionCounter.fill(counters, batch);
+			cipher.encryptBlocks(counters, 0, keystream, 0, batch);
+
+			var count = Math.min(length, batch * blocksize - skip);
+			ByteArray.xor(dst, dstOff, src, srcOff, keystream, skip, count);
+
+			skip = 0;
+			srcOff += count;
+			dstOff += count;
+			length -= count;
+		}
+	}
+
+	// each task starts from the working counter advanced by its first block
+	private void updateBlocksParallel(byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		final var base = workingCounter.copy();
+
+		processParallel(count, (cipher, from, to) -> {
+			var batchCounters = new byte[BATCH_BLOCKS * blocksize];
+			var batchKeystream = new byte[BATCH_BLOCKS * blocksize];
+			var counter = base.copy();
+			counter.add(from);
+
+			for (var idx = from; idx < to; idx += BATCH_BLOCKS) {
+				var batch = Math.min(to - idx, BATCH_BLOCKS);
+
+				counter.fill(batchCounters, batch);
+				cipher.encryptBlocks(batchCounters, 0, batchKeystream, 0, batch);
+				ByteArray.xor(dst, dstpos + idx * blocksize, src, srcpos + idx * blocksize, batchKeystream, 0,
+						batch * blocksize);
 			}
+		});
+
+		workingCounter.add(count);
+	}
+
+	// the keystream is xored straight into direct buffers
+	@Override
+	public void updateBlocks(ByteBuffer src, ByteBuffer dst, int count) {
+		if (src.hasArray() && dst.hasArray()) {
+			super.updateBlocks(src, dst, count);
+			return;
 		}
+
+		var srcidx = src.position();
+		var dstidx = dst.position();
+
+		while (count > 0) {
+			var batch = Math.min(count, BATCH_BLOCKS);
+			var length = batch * blocksize;
+
+			workingCounter.fill(counters, batch);
+			cipher.encryptBlocks(counters, 0, keystream, 0, batch);
+			ByteArray.xor(dst, dstidx, src, srcidx, keystream, 0, length);
+
+			srcidx += length;
+			dstidx += length;
+			count -= batch;
+		}
+
+		src.position(srcidx);
+		dst.position(dstidx);
 	}
 }
@@ -24,6 +24,8 @@
 
 package mockup.crypto.mode;
 
+import java.nio.ByteBuffer;
+
 import mockup.crypto.BufferedBlockCipher;
 
 public class EcbMode extends BufferedBlockCipher {
@@ -43,6 +45,11 @@ public class EcbMode extends BufferedBlockCipher {
 		// nothing to do
 	}
 
+	@Override
+	protected void loadIv(byte[] iv) {
+		// nothing to do
+	}
+
 	@Override
 	public void updateBlock(byte[] src, int srcpos, byte[] dst, int dstpos) {
 		if (cipherMode == CipherMode.ENCRYPT) {
@@ -52,4 +59,38 @@ public class EcbMode extends BufferedBlockCipher {
 			cipher.decryptBlock(src, srcpos, dst, dstpos);
 		}
 	}
+
+	@Override
+	public void updateBlocks(byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		if (isParallel(src, srcpos, dst, dstpos, count)) {
+			processParallel(count, (cipher, from, to) -> {
+				var skip = from * blocksize;
+
+				if (cipherMode == CipherMode.ENCRYPT) {
+					cipher.encryptBlocks(src, srcpos + skip, dst, dstpos + skip, to - from);
+
+				} else {
+					cipher.decryptBlocks(src, srcpos + skip, dst, dstpos + skip, to - from);
+				}
+			});
+			return;
+		}
+
+		if (cipherMode == CipherMode.ENCRYPT) {
+			cipher.encryptBlocks(src, srcpos, dst, dstpos, count);
+
+		} else {
+			cipher.decryptBlocks(src, srcpos, dst, dstpos, count);
+		}
+	}
+
+	@Override
+	public void updateBlocks(ByteBuffer src, ByteBuffer dst, int count) {
+		if (cipherMode == CipherMode.ENCRYPT) {
+			cipher.encryptBlocks(src, dst, count);
+
+		} else {
+			cipher.decryptBlocks(src, dst, count);
+		}
+	}
 }
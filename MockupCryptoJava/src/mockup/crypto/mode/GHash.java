@@ -0,0 +1,87 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mode;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * GHASH of GCM over GF(2^128)
+ *
+ * Blocks are read as two big-endian longs, so the coefficient of x^0 is the top
+ * bit of hi and that of x^127 the bottom bit of lo. Multiplying by x is then a
+ * right shift, reduced by R = 0xe1 || 0^120.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+abstract class GHash {
+
+	static final int BLOCKSIZE = 16;
+
+	protected static final long R = 0xe100000000000000L;
+	protected static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.BIG_ENDIAN);
+
+	protected long hi;
+	protected long lo;
+
+	static GHash newInstance(GcmMode.Multiplier multiplier, byte[] h) {
+		if (multiplier == GcmMode.Multiplier.MULTIPLY_HIGH) {
+			return new GHashMultiplyHigh(h);
+		}
+
+		return new GHashTable(h);
+	}
+
+	void reset() {
+		hi = 0;
+		lo = 0;
+	}
+
+	// absorbs count whole blocks
+	void update(final byte[] src, int offset, int count) {
+		for (var i = 0; i < count; ++i, offset += BLOCKSIZE) {
+			hi ^= (long) LONGS.get(src, offset);
+			lo ^= (long) LONGS.get(src, offset + 8);
+			multiplyH();
+		}
+	}
+
+	void update(long xhi, long xlo) {
+		hi ^= xhi;
+		lo ^= xlo;
+		multiplyH();
+	}
+
+	void digest(byte[] dst, int offset) {
+		LONGS.set(dst, offset, hi);
+		LONGS.set(dst, offset + 8, lo);
+	}
+
+	// hi:lo = hi:lo * H
+	protected abstract void multiplyH();
+}
@@ -0,0 +1,138 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mode;
+
+/**
+ * GHASH with carry-less multiplication built on integer multiplication
+ *
+ * Operands are split into four parts with every fourth bit set, so the integer
+ * products of two parts keep their sums in the gaps between the bits; the low
+ * half comes from a plain multiplication and the high half from
+ * Math.multiplyHigh. No table is indexed by secret data. The 128-bit product
+ * uses Karatsuba over 64-bit halves and is reduced as in BearSSL's ctmul64.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+final class GHashMultiplyHigh extends GHash {
+
+	private static final long M0 = 0x1111111111111111L;
+	private static final long M1 = 0x2222222222222222L;
+	private static final long M2 = 0x4444444444444444L;
+	private static final long M3 = 0x8888888888888888L;
+
+	// H as high and low halves, and their xor for Karatsuba
+	private final long h1;
+	private final long h0;
+	private final long h2;
+
+	// result of the last clmul
+	private long rhi;
+	private long rlo;
+
+	GHashMultiplyHigh(byte[] h) {
+		h1 = (long) LONGS.get(h, 0);
+		h0 = (long) LONGS.get(h, 8);
+		h2 = h0 ^ h1;
+	}
+
+	@Override
+	protected void multiplyH() {
+		var y1 = hi;
+		var y0 = lo;
+
+		clmul(y0, h0);
+		var z0h = rhi;
+		var z0l = rlo;
+
+		clmul(y1, h1);
+		var z1h = rhi;
+		var z1l = rlo;
+
+		clmul(y0 ^ y1, h2);
+		var z2h = rhi ^ z0h ^ z1h;
+		var z2l = rlo ^ z0l ^ z1l;
+
+		var v0 = z0l;
+		var v1 = z0h ^ z2l;
+		var v2 = z1l ^ z2h;
+		var v3 = z1h;
+
+		// the product of bit-reflected operands is one bit short
+		v3 = (v3 << 1) | (v2 >>> 63);
+		v2 = (v2 << 1) | (v1 >>> 63);
+		v1 = (v1 << 1) | (v0 >>> 63);
+		v0 = (v0 << 1);
+
+		v2 ^= v0 ^ (v0 >>> 1) ^ (v0 >>> 2) ^ (v0 >>> 7);
+		v1 ^= (v0 << 63) ^ (v0 << 62) ^ (v0 << 57);
+		v3 ^= v1 ^ (v1 >>> 1) ^ (v1 >>> 2) ^ (v1 >>> 7);
+		v2 ^= (v1 << 63) ^ (v1 << 62) ^ (v1 << 57);
+
+		hi = v3;
+		lo = v2;
+	}
+
+	// carry-less 64 x 64 -> 128 bit product into rhi:rlo
+	private void clmul(long x, long y) {
+		// with the top nibble of x taken out every part of x has at most 15 bits,
+		// so no sum in a product reaches the next bit of its part
+		var xt = x & 0x0fffffffffffffffL;
+
+		var x0 = xt & M0;
+		var x1 = xt & M1;
+		var x2 = xt & M2;
+		var x3 = xt & M3;
+		var y0 = y & M0;
+		var y1 = y & M1;
+		var y2 = y & M2;
+		var y3 = y & M3;
+
+		var l0 = (x0 * y0) ^ (x1 * y3) ^ (x2 * y2) ^ (x3 * y1);
+		var l1 = (x0 * y1) ^ (x1 * y0) ^ (x2 * y3) ^ (x3 * y2);
+		var l2 = (x0 * y2) ^ (x1 * y1) ^ (x2 * y0) ^ (x3 * y3);
+		var l3 = (x0 * y3) ^ (x1 * y2) ^ (x2 * y1) ^ (x3 * y0);
+
+		var u0 = high(x0, y0) ^ high(x1, y3) ^ high(x2, y2) ^ high(x3, y1);
+		var u1 = high(x0, y1) ^ high(x1, y0) ^ high(x2, y3) ^ high(x3, y2);
+		var u2 = high(x0, y2) ^ high(x1, y1) ^ high(x2, y0) ^ high(x3, y3);
+		var u3 = high(x0, y3) ^ high(x1, y2) ^ high(x2, y1) ^ high(x3, y0);
+
+		rlo = (l0 & M0) | (l1 & M1) | (l2 & M2) | (l3 & M3);
+		rhi = (u0 & M0) | (u1 & M1) | (u2 & M2) | (u3 & M3);
+
+		// the top nibble of x, without branches
+		for (var t = 60; t < 64; ++t) {
+			var mask = -((x >>> t) & 1);
+			rlo ^= (y << t) & mask;
+			rhi ^= (y >>> (64 - t)) & mask;
+		}
+	}
+
+	// unsigned high half of a * b, for a non-negative a
+	private static long high(long a, long b) {
+		return Math.multiplyHigh(a, b) + ((b >> 63) & a);
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mode;
+
+/**
+ * GHASH with Shoup's 8-bit tables
+ *
+ * A per-key table holds b * H for every value b of a leading byte, so a block
+ * is multiplied by H a byte at a time with Horner's rule. The bits shifted out
+ * by each multiplication by x^8 are folded back through the shared R8 table.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+final class GHashTable extends GHash {
+
+	// reduction of the 8 bits shifted out of lo when multiplying by x^8
+	private static final long[] R8 = new long[256];
+
+	static {
+		for (var r = 0; r < 256; ++r) {
+			var vh = 0L;
+			var vl = (long) r;
+
+			for (var i = 0; i < 8; ++i) {
+				var carry = vl & 1;
+				vl = (vl >>> 1) | (vh << 63);
+				vh = (vh >>> 1) ^ (-carry & R);
+			}
+
+			R8[r] = vh;
+		}
+	}
+
+	private final long[] mhi = new long[256];
+	private final long[] mlo = new long[256];
+
+	GHashTable(byte[] h) {
+		var vh = (long) LONGS.get(h, 0);
+		var vl = (long) LONGS.get(h, 8);
+
+		// the top bit of a byte is the coefficient of x^0
+		for (var bit = 0x80; bit > 0; bit >>>= 1) {
+			mhi[bit] = vh;
+			mlo[bit] = vl;
+
+			var carry = vl & 1;
+			vl = (vl >>> 1) | (vh << 63);
+			vh = (vh >>> 1) ^ (-carry & R);
+		}
+
+		for (var i = 2; i < 256; i <<= 1) {
+			for (var j = 1; j < i; ++j) {
+				mhi[i + j] = mhi[i] ^ mhi[j];
+				mlo[i + j] = mlo[i] ^ mlo[j];
+			}
+		}
+	}
+
+	@Override
+	protected void multiplyH() {
+		var zh = 0L;
+		var zl = 0L;
+
+		// from the last byte of the block to the first
+		for (var shift = 0; shift < 64; shift += 8) {
+			var rem = (int) zl & 0xff;
+			zl = (zl >>> 8) | (zh << 56);
+			zh = (zh >>> 8) ^ R8[rem];
+
+			var b = (int) (lo >>> shift) & 0xff;
+			zh ^= mhi[b];
+			zl ^= mlo[b];
+		}
+
+		for (var shift = 0; shift < 64; shift += 8) {
+			var rem = (int) zl & 0xff;
+			zl = (zl >>> 8) | (zh << 56);
+			zh = (zh >>> 8) ^ R8[rem];
+
+			var b = (int) (hi >>> shift) & 0xff;
+			zh ^= mhi[b];
+			zl ^= mlo[b];
+		}
+
+		hi = zh;
+		lo = zl;
+	}
+}
@@ -0,0 +1,436 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import mockup.crypto.BufferedBlockCipher;
+import mockup.crypto.Padding;
+import mockup.crypto.util.ByteArray;
+
+/**
+ * Galois/Counter mode (NIST SP 800-38D)
+ *
+ * Keystream comes from a 32-bit counter block starting after J0, and each batch
+ * of BATCH_BLOCKS is encrypted and hashed while it is still in cache. AAD is
+ * passed with updateAAD before the message. Encryption appends the tag in
+ * doFinal; decryption holds the trailing tag bytes back and verifies them in
+ * doFinal, throwing InvalidTagException on a mismatch. Plaintext returned by
+ * update is released before that verification, so it must not be trusted until
+ * doFinal returns.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class GcmMode extends BufferedBlockCipher {
+
+	public enum Multiplier {
+		// Shoup's 8-bit tables, 4 KB per key
+		TABLE,
+		// carry-less multiplication from integer multiplies, without secret indexed tables
+		MULTIPLY_HIGH
+	}
+
+	private static final int BLOCKSIZE = CounterBlock.BLOCKSIZE;
+	private static final int BATCH_BLOCKS = 32;
+	// SP 800-38D bounds in bytes: 2^39 - 256 bits of message and 2^64 - 1 bits of AAD
+	private static final long MAX_DATA_LENGTH = (1L << 36) - 32;
+	private static final long MAX_AAD_LENGTH = (1L << 61) - 1;
+
+	private final Multiplier multiplier;
+	private final int tagLength;
+
+	private GHash ghash;
+	private CounterBlock initialCounter;
+	private CounterBlock workingCounter;
+	private byte[] tagMask;
+	private byte[] counters;
+	private byte[] keystream;
+	private byte[] lastBlock;
+
+	private byte[] aadBuffer;
+	private int aadOffset;
+	private long aadLength;
+	private long dataLength;
+	private boolean isAadDone;
+
+	// trailing bytes of the input that may turn out to be the tag
+	private byte[] tagBuffer;
+	private ByteBuffer tagView;
+	private int tagOffset;
+
+	public GcmMode() {
+		this(Multiplier.TABLE, BLOCKSIZE);
+	}
+
+	public GcmMode(int tagLength) {
+		this(Multiplier.TABLE, tagLength);
+	}
+
+	public GcmMode(Multiplier multiplier, int tagLength) {
+		if (tagLength < 12 || tagLength > BLOCKSIZE) {
+			throw new IllegalArgumentException("Unsupported tag length: " + tagLength);
+		}
+
+		this.multiplier = multiplier;
+		this.tagLength = tagLength;
+	}
+
+	@Override
+	public String getName() {
+		return "GCM/" + cipher.getName();
+	}
+
+	public int getTagLength() {
+		return tagLength;
+	}
+
+	@Override
+	public void setPadding(Padding padding) {
+		if (padding != null) {
+			throw new IllegalArgumentException("GCM does not take a padding");
+		}
+	}
+
+	@Override
+	protected void restoreToInitialState() {
+		workingCounter.set(initialCounter);
+		ghash.reset();
+
+		Arrays.fill(keystream, (byte) 0);
+		Arrays.fill(aadBuffer, (byte) 0);
+		Arrays.fill(tagBuffer, (byte) 0);
+		aadOffset = 0;
+		aadLength = 0;
+		dataLength = 0;
+		isAadDone = false;
+		tagOffset = 0;
+	}
+
+	@Override
+	protected void init(byte[] iv) {
+		if (blocksize != BLOCKSIZE) {
+			throw new IllegalArgumentException("Unsupported blocksize: " + blocksize);
+		}
+
+		var h = new byte[BLOCKSIZE];
+		cipher.encryptBlock(h, 0, h, 0);
+		ghash = GHash.newInstance(multiplier, h);
+
+		tagMask = new byte[BLOCKSIZE];
+		initialCounter = new CounterBlock(32, h);
+		workingCounter = initialCounter.copy();
+
+		counters = new byte[BATCH_BLOCKS * BLOCKSIZE];
+		keystream = new byte[BATCH_BLOCKS * BLOCKSIZE];
+		lastBlock = new byte[BLOCKSIZE];
+		aadBuffer = new byte[BLOCKSIZE];
+		tagBuffer = new byte[tagLength];
+		tagView = ByteBuffer.wrap(tagBuffer);
+
+		loadIv(iv);
+		restoreToInitialState();
+	}
+
+	// J0 is iv || 0^31 || 1 for a 96-bit iv, otherwise GHASH(iv || len(iv)); a nonce
+	// must never be used twice under one key
+	@Override
+	protected void loadIv(byte[] iv) {
+		if (iv == null || iv.length == 0) {
+			throw new IllegalArgumentException("Unsupported iv length");
+		}
+
+		var j0 = lastBlock;
+		Arrays.fill(j0, (byte) 0);
+
+		if (iv.length == 12) {
+			System.arraycopy(iv, 0, j0, 0, iv.length);
+			j0[BLOCKSIZE - 1] = 1;
+
+		} else {
+			var count = iv.length / BLOCKSIZE;
+			var rest = iv.length % BLOCKSIZE;
+
+			ghash.reset();
+			ghash.update(iv, 0, count);
+			if (rest > 0) {
+				System.arraycopy(iv, count * BLOCKSIZE, j0, 0, rest);
+				ghash.update(j0, 0, 1);
+			}
+			ghash.update(0, (long) iv.length << 3);
+			ghash.digest(j0, 0);
+		}
+
+		cipher.encryptBlock(j0, 0, tagMask, 0);
+		initialCounter.load(j0);
+		initialCounter.add(1);
+	}
+
+	public void updateAAD(final byte[] aad) {
+		updateAAD(aad, 0, aad.length);
+	}
+
+	public void updateAAD(final byte[] aad, int offset, int length) {
+		if (isAadDone) {
+			throw new IllegalStateException("AAD must be passed before the message");
+		}
+
+		if (length > MAX_AAD_LENGTH - aadLength) {
+			reset();
+			throw new IllegalStateException("GCM AAD is too long");
+		}
+
+		aadLength += length;
+
+		if (aadOffset > 0) {
+			var gap = Math.min(length, BLOCKSIZE - aadOffset);
+			System.arraycopy(aad, offset, aadBuffer, aadOffset, gap);
+
+			aadOffset += gap;
+			offset += gap;
+			length -= gap;
+
+			if (aadOffset < BLOCKSIZE) {
+				return;
+			}
+
+			ghash.update(aadBuffer, 0, 1);
+			aadOffset = 0;
+		}
+
+		var count = length / BLOCKSIZE;
+		ghash.update(aad, offset, count);
+
+		offset += count * BLOCKSIZE;
+		length -= count * BLOCKSIZE;
+
+		System.arraycopy(aad, offset, aadBuffer, 0, length);
+		aadOffset = length;
+	}
+
+	private void finishAad() {
+		if (isAadDone) {
+			return;
+		}
+
+		if (aadOffset > 0) {
+			Arrays.fill(aadBuffer, aadOffset, BLOCKSIZE, (byte) 0);
+			ghash.update(aadBuffer, 0, 1);
+			aadOffset = 0;
+		}
+
+		isAadDone = true;
+	}
+
+	// decryption keeps the last tagLength bytes seen back from the cipher; held back
+	// bytes are older than the new input, so they go first
+	@Override
+	protected int process(final byte[] msg, int msgpos, int length, byte[] dst, int dstpos) {
+		if (cipherMode == CipherMode.ENCRYPT) {
+			return super.process(msg, msgpos, length, dst, dstpos);
+		}
+
+		var release = Math.max(0, tagOffset + length - tagLength);
+		var fromTag = Math.min(release, tagOffset);
+		var fromMsg = release - fromTag;
+		var written = 0;
+
+		if (fromTag > 0) {
+			written += super.process(tagBuffer, 0, fromTag, dst, dstpos);
+			dropTag(fromTag);
+		}
+
+		if (fromMsg > 0) {
+			written += super.process(msg, msgpos, fromMsg, dst, dstpos + written);
+		}
+
+		System.arraycopy(msg, msgpos + fromMsg, tagBuffer, tagOffset, length - fromMsg);
+		tagOffset += length - fromMsg;
+
+		return written;
+	}
+
+	@Override
+	protected int process(ByteBuffer src, ByteBuffer dst) {
+		if (cipherMode == CipherMode.ENCRYPT) {
+			return super.process(src, dst);
+		}
+
+		var release = Math.max(0, tagOffset + src.remaining() - tagLength);
+		var fromTag = Math.min(release, tagOffset);
+		var fromSrc = release - fromTag;
+		var written = 0;
+
+		if (fromTag > 0) {
+			tagView.limit(fromTag).position(0);
+			written += super.process(tagView, dst);
+			dropTag(fromTag);
+		}
+
+		if (fromSrc > 0) {
+			var limit = src.limit();
+			src.limit(src.position() + fromSrc);
+			written += super.process(src, dst);
+			src.limit(limit);
+		}
+
+		var rest = src.remaining();
+		src.get(tagBuffer, tagOffset, rest);
+		tagOffset += rest;
+
+		return written;
+	}
+
+	private void dropTag(int count) {
+		System.arraycopy(tagBuffer, count, tagBuffer, 0, tagOffset - count);
+		tagOffset -= count;
+	}
+
+	@Override
+	protected int getUpdateLength(int length) {
+		if (cipherMode == CipherMode.ENCRYPT) {
+			return super.getUpdateLength(length);
+		}
+
+		return super.getUpdateLength(Math.max(0, tagOffset + length - tagLength));
+	}
+
+	@Override
+	protected int getPendingLength() {
+		return super.getPendingLength() + (cipherMode == CipherMode.DECRYPT ? tagOffset : 0);
+	}
+
+	@Override
+	public int getOutputSize(int length) {
+		if (cipherMode == CipherMode.ENCRYPT) {
+			return offset + length + tagLength;
+		}
+
+		return Math.max(0, offset + tagOffset + length - tagLength);
+	}
+
+	@Override
+	public void updateBlock(byte[] src, int srcpos, byte[] dst, int dstpos) {
+		updateBlocks(src, srcpos, dst, dstpos, 1);
+	}
+
+	// CTR and GHASH stitched batch by batch; GHASH always runs over the ciphertext
+	@Override
+	public void updateBlocks(byte[] src, int srcpos, byte[] dst, int dstpos, int count) {
+		finishAad();
+		countData((long) count * BLOCKSIZE);
+
+		while (count > 0) {
+			var batch = Math.min(count, BATCH_BLOCKS);
+			var length = batch * BLOCKSIZE;
+
+			workingCounter.fill(counters, batch);
+			cipher.encryptBlocks(counters, 0, keystream, 0, batch);
+
+			if (cipherMode == CipherMode.ENCRYPT) {
+				ByteArray.xor(dst, dstpos, src, srcpos, keystream, 0, length);
+				ghash.update(dst, dstpos, batch);
+
+			} else {
+				ghash.update(src, srcpos, batch);
+				ByteArray.xor(dst, dstpos, src, srcpos, keystream, 0, length);
+			}
+
+			srcpos += length;
+			dstpos += length;
+			count -= batch;
+		}
+	}
+
+	@Override
+	public int doFinal(byte[] out, int outOff) {
+		checkOutputSpace(out, outOff, getOutputSize(0));
+
+		finishAad();
+
+		if (cipherMode == CipherMode.DECRYPT && tagOffset < tagLength) {
+			reset();
+			throw new InvalidTagException("message is shorter than the tag");
+		}
+
+		// the partial block is kept in keystream until the tag is known to be good
+		var length = offset;
+		finishData();
+		computeTag(lastBlock);
+
+		if (cipherMode == CipherMode.ENCRYPT) {
+			System.arraycopy(keystream, 0, out, outOff, length);
+			System.arraycopy(lastBlock, 0, out, outOff + length, tagLength);
+
+			reset();
+			return length + tagLength;
+		}
+
+		if (ByteArray.equalsConstantTime(lastBlock, 0, tagBuffer, 0, tagLength) == false) {
+			reset();
+			throw new InvalidTagException("tag mismatch");
+		}
+
+		System.arraycopy(keystream, 0, out, outOff, length);
+
+		reset();
+		return length;
+	}
+
+	// the partial block left in buffer, processed into keystream
+	private void finishData() {
+		if (offset == 0) {
+			return;
+		}
+
+		countData(offset);
+
+		workingCounter.fill(counters, 1);
+		cipher.encryptBlock(counters, 0, keystream, 0);
+		ByteArray.xor(keystream, 0, buffer, 0, keystream, 0, offset);
+
+		Arrays.fill(lastBlock, (byte) 0);
+		System.arraycopy(cipherMode == CipherMode.ENCRYPT ? keystream : buffer, 0, lastBlock, 0, offset);
+		ghash.update(lastBlock, 0, 1);
+	}
+
+	// every message byte is counted before it is processed, the final partial block included
+	private void countData(long length) {
+		if (length > MAX_DATA_LENGTH - dataLength) {
+			reset();
+			throw new IllegalStateException("GCM message is too long");
+		}
+
+		dataLength += length;
+	}
+
+	private void computeTag(byte[] tag) {
+		ghash.update(aadLength << 3, dataLength << 3);
+		ghash.digest(tag, 0);
+
+		ByteArray.xor(tag, 0, tag, 0, tagMask, 0, BLOCKSIZE);
+	}
+}
@@ -0,0 +1,217 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mode;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+
+import mockup.crypto.BlockCipher;
+import mockup.crypto.util.ByteArray;
+
+/**
+ * Output feedback keystream produced ahead on a background thread
+ *
+ * Blocks live in a single-producer single-consumer ring of depth + 1 slots, the
+ * extra one keeping the last block consumed for stop to hand back, and block
+ * t is the encryption of block t - 1. Whoever computes block t first claims it by
+ * moving claimed from t to t + 1, then publishes it by moving tail; so when the
+ * consumer finds the ring empty it computes the block itself with its own cipher
+ * instead of waiting. Reset and stop claim the next block the same way, which
+ * keeps the producer off the ring while it is rewound, and move the generation
+ * on; the producer checks the generation it started from again once it holds a
+ * claim, so a claim taken across a rewind is handed back instead of written.
+ * One producer thread lives until stop or close, parking whenever it has nothing
+ * to do; the consumer wakes it.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+final class KeystreamPrefetcher implements Runnable, AutoCloseable {
+
+	private static final VarHandle CLAIMED;
+
+	static {
+		try {
+			CLAIMED = MethodHandles.lookup().findVarHandle(KeystreamPrefetcher.class, "claimed", long.class);
+
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	// replaced by reset under a claim, so the producer reads it only while it holds one
+	private BlockCipher cipher;
+	private final int blocksize;
+	private final int depth;
+	private final int slots;
+	private final byte[] ring;
+	private final Thread producer;
+
+	// next block to consume, next block to publish, next block free to claim
+	private volatile long head;
+	private volatile long tail;
+	private volatile long claimed;
+	private volatile long generation;
+
+	private volatile boolean isWaiting;
+	private volatile boolean isStopped;
+
+	// cipher is used by the producer thread only; chain is the block before the first
+	KeystreamPrefetcher(BlockCipher cipher, byte[] chain, int depth) {
+		this.cipher = cipher;
+		this.blocksize = cipher.getBlocksize();
+		this.depth = depth;
+		this.slots = depth + 1;
+		this.ring = new byte[slots * blocksize];
+
+		System.arraycopy(chain, 0, ring, slot(-1), blocksize);
+
+		producer = new Thread(this, "ofb-prefetch");
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	int getBlocksize() {
+		return blocksize;
+	}
+
+	private int slot(long block) {
+		return (int) ((block + slots) % slots) * blocksize;
+	}
+
+	private void produce(BlockCipher cipher, long block) {
+		cipher.encryptBlock(ring, slot(block - 1), ring, slot(block));
+		tail = block + 1;
+	}
+
+	@Override
+	public void run() {
+		while (isStopped == false) {
+			var g = generation;
+			var t = tail;
+
+			if (t - head < depth && CLAIMED.compareAndSet(this, t, t + 1)) {
+				if (g == generation && t - head < depth) {
+					produce(cipher, t);
+
+				} else {
+					claimed = t;
+				}
+
+				continue;
+			}
+
+			// the ring is full or the consumer is computing block t itself
+			isWaiting = true;
+			if (isStopped == false && (tail - head >= depth || claimed != tail)) {
+				LockSupport.park(this);
+			}
+			isWaiting = false;
+		}
+	}
+
+	// waits for no longer than the producer takes for the block it is on
+	private int next(BlockCipher cipher) {
+		var h = head;
+
+		while (h == tail) {
+			if (CLAIMED.compareAndSet(this, h, h + 1)) {
+				produce(cipher, h);
+				break;
+			}
+
+			Thread.onSpinWait();
+		}
+
+		return slot(h);
+	}
+
+	private void release() {
+		var h = head + 1;
+		head = h;
+
+		// the producer is woken once half the ring is free, or after the consumer computed a block
+		if (isWaiting && tail - h <= depth / 2) {
+			LockSupport.unpark(producer);
+		}
+	}
+
+	// xors count bytes of the next block into dst, with the consumer's own cipher as fallback
+	void xorNext(BlockCipher cipher, byte[] dst, int dstpos, final byte[] src, int srcpos, int count) {
+		ByteArray.xor(dst, dstpos, src, srcpos, ring, next(cipher), count);
+		release();
+	}
+
+	void copyNext(BlockCipher cipher, byte[] keystream) {
+		System.arraycopy(ring, next(cipher), keystream, 0, blocksize);
+		release();
+	}
+
+	private long claim() {
+		while (true) {
+			var t = tail;
+			if (CLAIMED.compareAndSet(this, t, t + 1)) {
+				return t;
+			}
+
+			Thread.onSpinWait();
+		}
+	}
+
+	// rewinds to the block after chain, producing with cipher from then on
+	void reset(BlockCipher cipher, byte[] chain) {
+		claim();
+		generation += 1;
+
+		this.cipher = cipher;
+		System.arraycopy(chain, 0, ring, slot(-1), blocksize);
+		head = 0;
+		tail = 0;
+		claimed = 0;
+
+		LockSupport.unpark(producer);
+	}
+
+	void reset(byte[] chain) {
+		reset(cipher, chain);
+	}
+
+	// ends the producer and leaves the last block consumed in chain
+	void stop(byte[] chain) {
+		claim();
+		generation += 1;
+
+		System.arraycopy(ring, slot(head - 1), chain, 0, blocksize);
+		close();
+	}
+
+	// ends the producer; does not wait for the thread to exit, which it does once woken
+	@Override
+	public void close() {
+		isStopped = true;
+		LockSupport.unpark(producer);
+	}
+}
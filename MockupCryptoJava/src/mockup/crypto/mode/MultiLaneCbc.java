@@ -0,0 +1,194 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mode;
+
+import mockup.crypto.BlockCipher;
+import mockup.crypto.ExpandedKey;
+import mockup.crypto.NamedAlgorithm;
+import mockup.crypto.Padding;
+import mockup.crypto.util.ByteArray;
+
+/**
+ * CBC encryption of independent messages in lockstep
+ *
+ * Each lane carries one message with its own IV. A step takes the next block of
+ * every busy lane, xors it with that lane's chain, and encrypts all of them with
+ * one encryptBlocks call, so the block encryptions of different messages overlap
+ * where a single CBC chain cannot. A lane whose message ends picks up the next
+ * one, and the output of every message is what CbcMode gives for it.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class MultiLaneCbc implements NamedAlgorithm {
+
+	public static final int DEFAULT_LANES = 8;
+
+	private final int lanes;
+
+	private BlockCipher cipher;
+	private Padding padding;
+	private int blocksize;
+
+	// one block per lane: the blocks being encrypted, and the padded last blocks
+	private byte[] batch;
+	private byte[] tails;
+
+	// per lane: message index, next block and number of blocks
+	private int[] laneMessage;
+	private int[] laneBlock;
+	private int[] laneBlocks;
+
+	public MultiLaneCbc() {
+		this(DEFAULT_LANES);
+	}
+
+	public MultiLaneCbc(int lanes) {
+		if (lanes < 1) {
+			throw new IllegalArgumentException("lanes should be at least 1: " + lanes);
+		}
+
+		this.lanes = lanes;
+	}
+
+	@Override
+	public String getName() {
+		return "CBC/" + cipher.getName() + " x" + lanes;
+	}
+
+	public void init(BlockCipher cipher, byte[] mk) {
+		cipher.init(mk);
+		init(cipher);
+	}
+
+	public void init(ExpandedKey key) {
+		init(key.newCipher());
+	}
+
+	private void init(BlockCipher cipher) {
+		this.cipher = cipher;
+		blocksize = cipher.getBlocksize();
+
+		batch = new byte[lanes * blocksize];
+		tails = new byte[lanes * blocksize];
+		laneMessage = new int[lanes];
+		laneBlock = new int[lanes];
+		laneBlocks = new int[lanes];
+	}
+
+	public void setPadding(Padding padding) {
+		this.padding = padding;
+	}
+
+	public int getOutputSize(int length) {
+		return padding == null ? length : padding.getPaddedLength(length);
+	}
+
+	// encrypts msgs[i] under ivs[i]; without a padding every message must be whole blocks
+	public byte[][] encrypt(final byte[][] msgs, final byte[][] ivs) {
+		if (msgs.length != ivs.length) {
+			throw new IllegalArgumentException("one iv per message: " + msgs.length + " != " + ivs.length);
+		}
+
+		var dsts = new byte[msgs.length][];
+		for (var i = 0; i < msgs.length; ++i) {
+			if (padding == null && msgs[i].length % blocksize != 0) {
+				throw new IllegalArgumentException("message " + i + " is not a multiple of " + blocksize);
+			}
+
+			dsts[i] = new byte[getOutputSize(msgs[i].length)];
+		}
+
+		var next = 0;
+		var active = 0;
+
+		while (true) {
+			// idle lanes take the next messages; empty ones are done at once
+			while (active < lanes && next < msgs.length) {
+				if (dsts[next].length > 0) {
+					start(active++, next, dsts[next].length / blocksize);
+				}
+				++next;
+			}
+
+			if (active == 0) {
+				return dsts;
+			}
+
+			for (var lane = 0; lane < active; ++lane) {
+				gather(lane, msgs, ivs, dsts);
+			}
+
+			cipher.encryptBlocks(batch, 0, batch, 0, active);
+
+			// finished lanes are filled from the last busy one, so busy lanes stay in front
+			for (var lane = 0; lane < active; ++lane) {
+				var msg = laneMessage[lane];
+				System.arraycopy(batch, lane * blocksize, dsts[msg], laneBlock[lane] * blocksize, blocksize);
+
+				if (++laneBlock[lane] == laneBlocks[lane]) {
+					--active;
+					moveLane(active, lane);
+					System.arraycopy(batch, active * blocksize, batch, lane * blocksize, blocksize);
+					--lane;
+				}
+			}
+		}
+	}
+
+	private void start(int lane, int msg, int blocks) {
+		laneMessage[lane] = msg;
+		laneBlock[lane] = 0;
+		laneBlocks[lane] = blocks;
+	}
+
+	// the block of a lane xored with its chain, into the lane's slot of batch
+	private void gather(int lane, final byte[][] msgs, final byte[][] ivs, byte[][] dsts) {
+		var msg = laneMessage[lane];
+		var block = laneBlock[lane];
+		var src = msgs[msg];
+		var pos = lane * blocksize;
+
+		var chain = block == 0 ? ivs[msg] : dsts[msg];
+		var chainpos = block == 0 ? 0 : (block - 1) * blocksize;
+
+		if (padding != null && block == laneBlocks[lane] - 1) {
+			var rest = src.length - block * blocksize;
+			System.arraycopy(src, block * blocksize, tails, pos, rest);
+			padding.pad(tails, pos, rest);
+
+			ByteArray.xor(batch, pos, tails, pos, chain, chainpos, blocksize);
+			return;
+		}
+
+		ByteArray.xor(batch, pos, src, block * blocksize, chain, chainpos, blocksize);
+	}
+
+	private void moveLane(int from, int to) {
+		laneMessage[to] = laneMessage[from];
+		laneBlock[to] = laneBlock[from];
+		laneBlocks[to] = laneBlocks[from];
+	}
+}
@@ -24,14 +24,20 @@
 
 package mockup.crypto.mode;
 
+import java.util.Arrays;
+
 import mockup.crypto.BufferedBlockCipher;
 import mockup.crypto.util.ByteArray;
 
-public class OfbMode extends BufferedBlockCipher {
+public class OfbMode extends BufferedBlockCipher implements AutoCloseable {
 
 	private byte[] initialIv;
 	private byte[] workingIv;
 
+	// keystream computed ahead on a background thread, see setPrefetch
+	private int prefetchDepth;
+	private KeystreamPrefetcher prefetcher;
+
 	@Override
 	public String getName() {
 		return "OFB/" + cipher.getName();
@@ -40,20 +46,107 @@ public class OfbMode extends BufferedBlockCipher {
 	@Override
 	protected void restoreToInitialState() {
 		System.arraycopy(initialIv, 0, workingIv, 0, initialIv.length);
+
+		if (prefetcher != null) {
+			prefetcher.reset(initialIv);
+		}
 	}
 
 	@Override
 	protected void init(byte[] iv) {
-
 		initialIv = new byte[blocksize];
 		workingIv = new byte[blocksize];
 
 		System.arraycopy(iv, 0, initialIv, 0, iv.length);
 		System.arraycopy(iv, 0, workingIv, 0, iv.length);
+
+		startPrefetch();
+	}
+
+	@Override
+	protected void loadIv(byte[] iv) {
+		Arrays.fill(initialIv, (byte) 0);
+		System.arraycopy(iv, 0, initialIv, 0, iv.length);
+	}
+
+	// keeps up to depth keystream blocks ready on a background thread, which update
+	// only has to xor; when it runs out the caller computes the next block itself.
+	// This takes effect when initialized with an ExpandedKey, whose cipher the thread
+	// uses. The thread is rewound by reset, reinit and doFinal, and moves onto the new
+	// key when initialized again; it ends with depth 0 or close
+	public void setPrefetch(int depth) {
+		if (depth < 0 || depth == 1) {
+			throw new IllegalArgumentException("prefetch depth should be 0 or at least 2: " + depth);
+		}
+
+		stopPrefetch();
+		prefetchDepth = depth;
+		startPrefetch();
+	}
+
+	// ends the prefetch thread for good; the mode itself stays usable inline
+	@Override
+	public void close() {
+		stopPrefetch();
+		prefetchDepth = 0;
+	}
+
+	// a running producer is rewound onto the current key and chain rather than restarted
+	private void startPrefetch() {
+		if (prefetcher != null && prefetcher.getBlocksize() != blocksize) {
+			closePrefetch();
+		}
+
+		if (prefetchDepth == 0 || expandedKey == null || workingIv == null) {
+			closePrefetch();
+
+		} else if (prefetcher != null) {
+			prefetcher.reset(expandedKey.newCipher(), workingIv);
+
+		} else {
+			prefetcher = new KeystreamPrefetcher(expandedKey.newCipher(), workingIv, prefetchDepth);
+		}
+	}
+
+	// the stream goes on inline from the last block consumed
+	private void stopPrefetch() {
+		if (prefetcher != null) {
+			prefetcher.stop(workingIv);
+			prefetcher = null;
+		}
+	}
+
+	// the ring is dropped, for when workingIv already holds a new chain
+	private void closePrefetch() {
+		if (prefetcher != null) {
+			prefetcher.close();
+			prefetcher = null;
+		}
+	}
+
+	@Override
+	protected boolean isStreamMode() {
+		return true;
+	}
+
+	@Override
+	protected void nextKeystream(byte[] keystream) {
+		if (prefetcher != null) {
+			prefetcher.copyNext(cipher, keystream);
+			return;
+		}
+
+		cipher.encryptBlock(workingIv, 0, workingIv, 0);
+		System.arraycopy(workingIv, 0, keystream, 0, blocksize);
 	}
 
 	@Override
 	public void updateBlock(byte[] src, int srcpos, byte[] dst, int dstpos) {
+		if (prefetcher != null) {
+			prefetcher.xorNext(cipher, dst, dstpos, src, srcpos, shift);
+			return;
+		}
+
 		cipher.encryptBlock(workingIv, 0, workingIv, 0);
 		ByteArray.xor(dst, dstpos, src, srcpos, workingIv, 0, shift);
 	}
@@ -0,0 +1,328 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.mode;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mockup.crypto.BlockCipher;
+import mockup.crypto.BufferedBlockCipher;
+import mockup.crypto.ExpandedKey;
+import mockup.crypto.NamedAlgorithm;
+import mockup.crypto.block_cipher.AesKey;
+import mockup.crypto.util.ByteArray;
+
+/**
+ * XEX-based tweaked-codebook mode with ciphertext stealing (IEEE 1619, NIST SP 800-38E)
+ *
+ * Every sector is a data unit of its own whose tweak is the sector number
+ * encrypted under the second key, so sectors can be processed in any order and
+ * on any thread. The tweak is doubled in GF(2^128) on a pair of longs, and the
+ * tweaks of a batch are laid out first so the data key runs over the whole batch
+ * with encryptBlocks. A sector that is not a multiple of the block size ends with
+ * ciphertext stealing. An instance is not thread safe by itself, but the sector
+ * methods spread inputs of at least the parallel threshold over the pool.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class XtsMode implements NamedAlgorithm {
+
+	private static final int BLOCKSIZE = 16;
+	private static final int BATCH_BLOCKS = 32;
+
+	// bytes handled by one fork/join task
+	private static final int PARALLEL_CHUNK = 1 << 16;
+
+	// tweaks are little-endian 128-bit integers
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	private final ExpandedKey dataKey;
+	private final ExpandedKey tweakKey;
+	private final SectorCipher sectorCipher;
+
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private int parallelThreshold = BufferedBlockCipher.DEFAULT_PARALLEL_THRESHOLD;
+
+	// key1 || key2 as in IEEE 1619, 32 bytes for XTS-AES-128 or 64 bytes for XTS-AES-256
+	public XtsMode(byte[] mk) {
+		this(newKey(checkKey(mk), 0), newKey(mk, 1));
+	}
+
+	// the same key object, or two keys that encrypt a zero block alike, is rejected
+	public XtsMode(ExpandedKey dataKey, ExpandedKey tweakKey) {
+		if (dataKey == tweakKey) {
+			throw new IllegalArgumentException("XTS keys should differ");
+		}
+
+		this.dataKey = dataKey;
+		this.tweakKey = tweakKey;
+		this.sectorCipher = new SectorCipher();
+
+		if (sectorCipher.cipher.getBlocksize() != BLOCKSIZE || sectorCipher.tweakCipher.getBlocksize() != BLOCKSIZE) {
+			throw new IllegalArgumentException("XTS requires a 128-bit block cipher");
+		}
+
+		var data = new byte[BLOCKSIZE];
+		var tweak = new byte[BLOCKSIZE];
+		sectorCipher.cipher.encryptBlock(data, 0, data, 0);
+		sectorCipher.tweakCipher.encryptBlock(tweak, 0, tweak, 0);
+
+		if (Arrays.equals(data, tweak)) {
+			throw new IllegalArgumentException("XTS keys should differ");
+		}
+	}
+
+	// checked before either half is expanded
+	private static byte[] checkKey(byte[] mk) {
+		if (mk.length != 32 && mk.length != 64) {
+			throw new IllegalArgumentException("Unsupported key length: " + mk.length);
+		}
+
+		if (Arrays.equals(mk, 0, mk.length / 2, mk, mk.length / 2, mk.length)) {
+			throw new IllegalArgumentException("XTS keys should differ");
+		}
+
+		return mk;
+	}
+
+	private static AesKey newKey(byte[] mk, int half) {
+		var length = mk.length / 2;
+		return new AesKey(Arrays.copyOfRange(mk, half * length, (half + 1) * length));
+	}
+
+	@Override
+	public String getName() {
+		return "XTS/" + sectorCipher.cipher.getName();
+	}
+
+	// sector calls of at least threshold bytes are split into tasks on the pool
+	public void setParallelism(ForkJoinPool pool, int threshold) {
+		if (threshold < PARALLEL_CHUNK) {
+			throw new IllegalArgumentException("threshold should be at least " + PARALLEL_CHUNK);
+		}
+
+		this.pool = pool;
+		this.parallelThreshold = threshold;
+	}
+
+	public void encryptSector(long sector, final byte[] src, int srcpos, byte[] dst, int dstpos, int length) {
+		sectorCipher.process(true, sector, src, srcpos, dst, dstpos, length);
+	}
+
+	public void decryptSector(long sector, final byte[] src, int srcpos, byte[] dst, int dstpos, int length) {
+		sectorCipher.process(false, sector, src, srcpos, dst, dstpos, length);
+	}
+
+	// length / sectorSize consecutive sectors, numbered from sector
+	public void encryptSectors(long sector, int sectorSize, final byte[] src, int srcpos, byte[] dst, int dstpos,
+			int length) {
+		processSectors(true, sector, sectorSize, src, srcpos, dst, dstpos, length);
+	}
+
+	public void decryptSectors(long sector, int sectorSize, final byte[] src, int srcpos, byte[] dst, int dstpos,
+			int length) {
+		processSectors(false, sector, sectorSize, src, srcpos, dst, dstpos, length);
+	}
+
+	private void processSectors(boolean encrypt, long sector, int sectorSize, final byte[] src, int srcpos,
+			byte[] dst, int dstpos, int length) {
+
+		if (sectorSize < BLOCKSIZE || length % sectorSize != 0) {
+			throw new IllegalArgumentException("length should be a multiple of a sector of at least " + BLOCKSIZE);
+		}
+
+		var count = length / sectorSize;
+
+		// src and dst must not overlap unless they are the same range
+		if (length >= parallelThreshold && (src != dst || srcpos == dstpos)) {
+			var leaf = Math.max(1, PARALLEL_CHUNK / sectorSize);
+			pool.invoke(new SectorRangeTask((cipher, from, to) -> {
+				for (var idx = from; idx < to; ++idx) {
+					var skip = idx * sectorSize;
+					cipher.process(encrypt, sector + idx, src, srcpos + skip, dst, dstpos + skip, sectorSize);
+				}
+			}, 0, count, leaf));
+			return;
+		}
+
+		for (var idx = 0; idx < count; ++idx) {
+			var skip = idx * sectorSize;
+			sectorCipher.process(encrypt, sector + idx, src, srcpos + skip, dst, dstpos + skip, sectorSize);
+		}
+	}
+
+	private interface SectorRange {
+		// processes sectors [from, to) with a cipher owned by the calling task
+		void process(SectorCipher cipher, int from, int to);
+	}
+
+	private class SectorRangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SectorRange range;
+		private final int from;
+		private final int to;
+		private final int leaf;
+
+		SectorRangeTask(SectorRange range, int from, int to, int leaf) {
+			this.range = range;
+			this.from = from;
+			this.to = to;
+			this.leaf = leaf;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= leaf) {
+				range.process(new SectorCipher(), from, to);
+				return;
+			}
+
+			var mid = from + ((to - from) / leaf / 2) * leaf;
+			if (mid == from) {
+				mid += leaf;
+			}
+
+			invokeAll(new SectorRangeTask(range, from, mid, leaf), new SectorRangeTask(range, mid, to, leaf));
+		}
+	}
+
+	// ciphers and scratch space for one thread
+	private class SectorCipher {
+
+		private final BlockCipher cipher = dataKey.newCipher();
+		private final BlockCipher tweakCipher = tweakKey.newCipher();
+		private final byte[] tweaks = new byte[BATCH_BLOCKS * BLOCKSIZE];
+		private final byte[] block = new byte[BLOCKSIZE];
+		private final byte[] stolen = new byte[BLOCKSIZE];
+
+		private long lo;
+		private long hi;
+
+		// multiplication by x, reduced by x^128 + x^7 + x^2 + x + 1
+		private void nextTweak() {
+			var carry = hi >> 63;
+			hi = (hi << 1) | (lo >>> 63);
+			lo = (lo << 1) ^ (carry & 0x87);
+		}
+
+		private void xorTweak(byte[] data, int offset, long lo, long hi) {
+			LONGS.set(data, offset, (long) LONGS.get(data, offset) ^ lo);
+			LONGS.set(data, offset + 8, (long) LONGS.get(data, offset + 8) ^ hi);
+		}
+
+		private void crypt(boolean encrypt, byte[] data, long lo, long hi) {
+			xorTweak(data, 0, lo, hi);
+			if (encrypt) {
+				cipher.encryptBlock(data, 0, data, 0);
+
+			} else {
+				cipher.decryptBlock(data, 0, data, 0);
+			}
+			xorTweak(data, 0, lo, hi);
+		}
+
+		void process(boolean encrypt, long sector, final byte[] src, int srcpos, byte[] dst, int dstpos, int length) {
+			if (length < BLOCKSIZE) {
+				throw new IllegalArgumentException("sector should be at least " + BLOCKSIZE + " bytes");
+			}
+
+			LONGS.set(block, 0, sector);
+			LONGS.set(block, 8, 0L);
+			tweakCipher.encryptBlock(block, 0, block, 0);
+			lo = (long) LONGS.get(block, 0);
+			hi = (long) LONGS.get(block, 8);
+
+			// with a partial last block, the last full block is left for stealing
+			var remainder = length % BLOCKSIZE;
+			var count = length / BLOCKSIZE - (remainder > 0 ? 1 : 0);
+
+			while (count > 0) {
+				var batch = Math.min(count, BATCH_BLOCKS);
+				var bytes = batch * BLOCKSIZE;
+
+				for (var idx = 0; idx < bytes; idx += BLOCKSIZE) {
+					LONGS.set(tweaks, idx, lo);
+					LONGS.set(tweaks, idx + 8, hi);
+					nextTweak();
+				}
+
+				ByteArray.xor(dst, dstpos, src, srcpos, tweaks, 0, bytes);
+				if (encrypt) {
+					cipher.encryptBlocks(dst, dstpos, dst, dstpos, batch);
+
+				} else {
+					cipher.decryptBlocks(dst, dstpos, dst, dstpos, batch);
+				}
+				ByteArray.xor(dst, dstpos, dst, dstpos, tweaks, 0, bytes);
+
+				srcpos += bytes;
+				dstpos += bytes;
+				count -= batch;
+			}
+
+			if (remainder > 0) {
+				steal(encrypt, src, srcpos, dst, dstpos, remainder);
+			}
+		}
+
+		// the last full block and the partial block after it; decryption uses the two
+		// tweaks in the opposite order, and inputs are copied before dst is written
+		private void steal(boolean encrypt, final byte[] src, int srcpos, byte[] dst, int dstpos, int remainder) {
+			var firstLo = lo;
+			var firstHi = hi;
+			nextTweak();
+
+			System.arraycopy(src, srcpos, block, 0, BLOCKSIZE);
+			System.arraycopy(src, srcpos + BLOCKSIZE, stolen, 0, remainder);
+
+			if (encrypt) {
+				crypt(true, block, firstLo, firstHi);
+
+			} else {
+				crypt(false, block, lo, hi);
+			}
+
+			System.arraycopy(block, remainder, stolen, remainder, BLOCKSIZE - remainder);
+			System.arraycopy(block, 0, dst, dstpos + BLOCKSIZE, remainder);
+
+			if (encrypt) {
+				crypt(true, stolen, lo, hi);
+
+			} else {
+				crypt(false, stolen, firstLo, firstHi);
+			}
+
+			System.arraycopy(stolen, 0, dst, dstpos, BLOCKSIZE);
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.padding;
+
+import java.util.Arrays;
+
+import mockup.crypto.Padding;
+
+// zeros followed by a last byte counting the padding (ANSI X9.23)
+public class AnsiX923Padding extends Padding {
+
+	public AnsiX923Padding(int blocksize) {
+		super(blocksize);
+	}
+
+	@Override
+	public String getName() {
+		return "X9.23-Padding";
+	}
+
+	@Override
+	public int pad(byte[] block, int offset, int length) {
+		var pad = blocksize - (length % blocksize);
+		Arrays.fill(block, offset + length, offset + length + pad - 1, (byte) 0);
+		block[offset + length + pad - 1] = (byte) pad;
+
+		return length + pad;
+	}
+
+	@Override
+	public int tryUnpad(final byte[] in, int offset, int length) {
+		var span = getSpan(length);
+		var end = offset + length;
+		var pad = length == 0 ? 0 : in[end - 1] & 0xff;
+
+		var bad = zeroMask(pad) | (span - pad) >> 31;
+		for (var i = 2; i <= span; ++i) {
+			var isPadding = (i - pad - 1) >> 31;
+			bad |= isPadding & in[end - i];
+		}
+
+		return select(length - pad, bad);
+	}
+}
@@ -24,12 +24,18 @@
 
 package mockup.crypto.padding;
 
+// carries no stack trace and no detail of what was wrong, since it is thrown for
+// every forged or corrupted message that reaches decryption
 public class InvalidPaddingException extends RuntimeException {
 
 	private static final long serialVersionUID = 1L;
 
+	public InvalidPaddingException() {
+		super("invalid padding", null, false, false);
+	}
+
 	public InvalidPaddingException(String msg) {
-		super(msg);
+		super(msg, null, false, false);
 	}
 
 }
@@ -0,0 +1,72 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.padding;
+
+import java.util.Arrays;
+
+import mockup.crypto.Padding;
+
+// a 0x80 byte followed by zeros (ISO/IEC 7816-4, also ISO/IEC 9797-1 method 2)
+public class Iso7816Padding extends Padding {
+
+	public Iso7816Padding(int blocksize) {
+		super(blocksize);
+	}
+
+	@Override
+	public String getName() {
+		return "ISO7816-4-Padding";
+	}
+
+	@Override
+	public int pad(byte[] block, int offset, int length) {
+		var pad = blocksize - (length % blocksize);
+		block[offset + length] = (byte) 0x80;
+		Arrays.fill(block, offset + length + 1, offset + length + pad, (byte) 0);
+
+		return length + pad;
+	}
+
+	// the last non-zero byte of the span is found without stopping at it, and must be 0x80
+	@Override
+	public int tryUnpad(final byte[] in, int offset, int length) {
+		var span = getSpan(length);
+		var end = offset + length;
+
+		var pad = 0;
+		var found = 0;
+		var bad = 0;
+		for (var i = 1; i <= span; ++i) {
+			var value = in[end - i] & 0xff;
+			var isFirst = ~found & ~zeroMask(value);
+
+			bad |= isFirst & (value ^ 0x80);
+			pad |= isFirst & i;
+			found |= isFirst;
+		}
+
+		return select(length - pad, bad | ~found);
+	}
+}
@@ -27,7 +27,6 @@ package mockup.crypto.padding;
 import java.util.Arrays;
 
 import mockup.crypto.Padding;
-import mockup.crypto.util.ByteArray;
 
 public class Pkcs7Padding extends Padding {
 
@@ -41,31 +40,26 @@ public class Pkcs7Padding extends Padding {
 	}
 
 	@Override
-	public byte[] pad(byte[] in, int length) {
+	public int pad(byte[] block, int offset, int length) {
 		var pad = blocksize - (length % blocksize);
-		var buffer = new byte[length + pad];
+		Arrays.fill(block, offset + length, offset + length + pad, (byte) pad);
 
-		System.arraycopy(in, 0, buffer, 0, length);
-		Arrays.fill(buffer, length, buffer.length, (byte) pad);
-		
-		return buffer;
+		return length + pad;
 	}
 
-	public byte[] unpad(byte[] in) {
-		var pad = in[in.length - 1];
-
-		if (pad < 0 || pad > blocksize) {
-			throw new InvalidPaddingException("Wrong padding size: " + pad);
-		}
+	// every byte of the span is read; those within the padding must equal it
+	@Override
+	public int tryUnpad(final byte[] in, int offset, int length) {
+		var span = getSpan(length);
+		var end = offset + length;
+		var pad = length == 0 ? 0 : in[end - 1] & 0xff;
 
-		for (int i = in.length - 1; i >= in.length - pad; --i) {
-			if (in[i] != pad) {
-				throw new InvalidPaddingException("Wrong padding value");
-			}
+		var bad = zeroMask(pad) | (span - pad) >> 31;
+		for (var i = 1; i <= span; ++i) {
+			var isPadding = (i - pad - 1) >> 31;
+			bad |= isPadding & ((in[end - i] & 0xff) ^ pad);
 		}
 
-		var buffer = new byte[in.length - pad];
-		System.arraycopy(in, 0, buffer, 0, in.length - pad);
-		return buffer;
+		return select(length - pad, bad);
 	}
 }
@@ -0,0 +1,75 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.padding;
+
+import java.util.Arrays;
+
+import mockup.crypto.Padding;
+
+// zeros up to the next block boundary, none for aligned input; unpadding strips
+// every trailing zero, so it only suits data that cannot end in a zero byte
+public class ZeroPadding extends Padding {
+
+	public ZeroPadding(int blocksize) {
+		super(blocksize);
+	}
+
+	@Override
+	public String getName() {
+		return "Zero-Padding";
+	}
+
+	@Override
+	public int getPaddedLength(int length) {
+		return (length + blocksize - 1) / blocksize * blocksize;
+	}
+
+	@Override
+	public int pad(byte[] block, int offset, int length) {
+		var pad = getPaddedLength(length) - length;
+		Arrays.fill(block, offset + length, offset + length + pad, (byte) 0);
+
+		return length + pad;
+	}
+
+	// the trailing zeros of the span, counted without stopping at the first non-zero
+	// byte; any input is valid
+	@Override
+	public int tryUnpad(final byte[] in, int offset, int length) {
+		var span = getSpan(length);
+		var end = offset + length;
+
+		var pad = 0;
+		var found = 0;
+		for (var i = 1; i <= span; ++i) {
+			var isFirst = ~found & ~zeroMask(in[end - i] & 0xff);
+
+			pad |= isFirst & (i - 1);
+			found |= isFirst;
+		}
+
+		return length - ((pad & found) | (span & ~found));
+	}
+}
@@ -25,9 +25,17 @@
 package mockup.crypto.util;
 
 import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public class ByteArray {
 
+	// 8-byte view of a byte array, used to xor a long at a time
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.nativeOrder());
+
 	public static byte[] left(byte[] lhs, int count) {
 		if (lhs.length < count) {
 			throw new IllegalArgumentException("byte array is too short");
@@ -87,11 +95,56 @@ public class ByteArray {
 			throw new IllegalArgumentException("wrong array length: " + msg);
 		}
 
-		for (int i = 0; i < count; ++i) {
+		var i = 0;
+		for (; i <= count - 8; i += 8) {
+			var value = (long) LONGS.get(lhs, lhsoff + i) ^ (long) LONGS.get(rhs, rhsoff + i);
+			LONGS.set(dst, dstoff + i, value);
+		}
+
+		for (; i < count; ++i) {
 			dst[dstoff + i] = (byte) (lhs[lhsoff + i] ^ rhs[rhsoff + i]);
 		}
 	}
 
+	// reads every byte whatever the first difference, so the time does not leak it
+	public static boolean equalsConstantTime(final byte[] lhs, int lhsoff, final byte[] rhs, int rhsoff, int count) {
+		var diff = 0;
+		for (var i = 0; i < count; ++i) {
+			diff |= lhs[lhsoff + i] ^ rhs[rhsoff + i];
+		}
+
+		return diff == 0;
+	}
+
+	// absolute indices; the buffer positions are left untouched
+	public static void xor(ByteBuffer dst, int dstidx, ByteBuffer lhs, int lhsidx, final byte[] rhs, int rhsoff,
+			int count) {
+
+		if (rhs.length < rhsoff + count) {
+			throw new IllegalArgumentException("wrong array length: " + rhs.length);
+		}
+
+		var i = 0;
+		for (; i <= count - 8; i += 8) {
+			var value = getLong(lhs, lhsidx + i) ^ (long) LONGS.get(rhs, rhsoff + i);
+			putLong(dst, dstidx + i, value);
+		}
+
+		for (; i < count; ++i) {
+			dst.put(dstidx + i, (byte) (lhs.get(lhsidx + i) ^ rhs[rhsoff + i]));
+		}
+	}
+
+	// a long of the buffer in native order, to match the LONGS view
+	private static long getLong(ByteBuffer buf, int idx) {
+		var value = buf.getLong(idx);
+		return buf.order() == ByteOrder.nativeOrder() ? value : Long.reverseBytes(value);
+	}
+
+	private static void putLong(ByteBuffer buf, int idx, long value) {
+		buf.putLong(idx, buf.order() == ByteOrder.nativeOrder() ? value : Long.reverseBytes(value));
+	}
+
 	public static String toString(byte[] bs) {
 		if (bs == null) {
 			return null;
@@ -24,6 +24,9 @@
 
 package mockup.crypto.util;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 public class DataConversions {
 
 	// integer to byte string
@@ -65,6 +68,23 @@ public class DataConversions {
 		out[offset++] = (byte) (in);
 	}
 
+	// byte stream to integer (Big Endian)
+	public static int bs2i_be(byte[] in, int offset) {
+		return ((in[offset] & 0xff) << 24) | ((in[offset + 1] & 0xff) << 16) | ((in[offset + 2] & 0xff) << 8)
+				| (in[offset + 3] & 0xff);
+	}
+
+	// byte buffer to integer (Big Endian, regardless of the buffer's byte order)
+	public static int bs2i_be(ByteBuffer in, int index) {
+		var value = in.getInt(index);
+		return in.order() == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes(value);
+	}
+
+	// integer to byte buffer (Big Endian, regardless of the buffer's byte order)
+	public static void i2bs_be(int in, ByteBuffer out, int index) {
+		out.putInt(index, out.order() == ByteOrder.BIG_ENDIAN ? in : Integer.reverseBytes(in));
+	}
+
 	// long to byte stream (Big Endian)
 	public static byte[] l2bs_be(long in) {
 		byte[] out = new byte[8];
@@ -84,6 +104,11 @@ public class DataConversions {
 		out[offset++] = (byte) (in);
 	}
 
+	// long to byte buffer (Big Endian, regardless of the buffer's byte order)
+	public static void l2bs_be(long in, ByteBuffer out, int index) {
+		out.putLong(index, out.order() == ByteOrder.BIG_ENDIAN ? in : Long.reverseBytes(in));
+	}
+
 	// integer stream to byte stream (Big Endian)
 	public static byte[] is2bs_be(int[] is) {
 		byte[] bs = new byte[is.length * 4];
@@ -25,6 +25,8 @@
 module mockup.crypto {
 	exports mockup.crypto;
 	exports mockup.crypto.block_cipher;
+	exports mockup.crypto.hash;
+	exports mockup.crypto.mac;
 	exports mockup.crypto.mode;
 	exports mockup.crypto.padding;
 	exports mockup.crypto.rsa;
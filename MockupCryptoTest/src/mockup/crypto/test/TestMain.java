@@ -25,12 +25,22 @@
 package mockup.crypto.test;
 
 import mockup.crypto.test.block_cipher.TestAes;
+import mockup.crypto.test.block_cipher.TestAesKeyCache;
+import mockup.crypto.test.hash.TestSha256;
+import mockup.crypto.test.mac.TestMac;
+import mockup.crypto.test.mode.BenchMode;
 import mockup.crypto.test.mode.TestMode;
+import mockup.crypto.test.padding.TestPadding;
 
 public class TestMain {
 
 	public static void main(String[] args) {
 		TestAes.run();
+		TestAesKeyCache.run();
+		TestSha256.run();
+		TestMac.run();
+		TestPadding.run();
 		TestMode.run();
+		BenchMode.run();
 	}
 }
@@ -0,0 +1,89 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.test.block_cipher;
+
+import java.util.Arrays;
+
+import mockup.crypto.block_cipher.AesKeyCache;
+import mockup.crypto.block_cipher.AesTable;
+
+public class TestAesKeyCache {
+
+	public static void run() {
+		var cache = new AesKeyCache(2);
+
+		var mk1 = new byte[16];
+		var mk2 = new byte[24];
+		var mk3 = new byte[32];
+		var pt = new byte[16];
+
+		var expected = new byte[16];
+		var cipher = new AesTable();
+		cipher.init(mk1);
+		cipher.encryptBlock(pt, 0, expected, 0);
+
+		var enc = new byte[16];
+		try (var key = cache.acquire(mk1)) {
+			key.newCipher().encryptBlock(pt, 0, enc, 0);
+		}
+
+		cache.acquire(mk1).close();
+		cache.acquire(mk2).close();
+		cache.acquire(mk3).close();
+		cache.acquire(mk1).close();
+
+		var isPassed = Arrays.equals(expected, enc);
+		isPassed &= cache.getHitCount() == 1 && cache.getMissCount() == 4 && cache.getEvictionCount() == 2;
+		isPassed &= cache.size() == 2;
+		isPassed &= testUseAfterClose(cache, mk2, pt);
+
+		System.out.println("AES key cache: " + isPassed);
+		if (isPassed == false) {
+			System.out.println("\t    hit: " + cache.getHitCount());
+			System.out.println("\t   miss: " + cache.getMissCount());
+			System.out.println("\tevicted: " + cache.getEvictionCount());
+		}
+		System.out.println();
+	}
+
+	// a cipher outliving its evicted and closed lease fails instead of using a zeroized schedule
+	private static boolean testUseAfterClose(AesKeyCache cache, byte[] mk, byte[] pt) {
+		var enc = new byte[16];
+		var lease = cache.acquire(mk);
+		var cipher = lease.newCipher();
+
+		cache.clear();
+		cipher.encryptBlock(pt, 0, enc, 0);
+		lease.close();
+
+		try {
+			cipher.encryptBlock(pt, 0, enc, 0);
+			return false;
+
+		} catch (IllegalStateException e) {
+			return true;
+		}
+	}
+}
@@ -24,6 +24,8 @@
 
 package mockup.crypto.test.block_cipher;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 import mockup.crypto.BlockCipher;
@@ -69,4 +71,79 @@ public class TestCipher {
 		System.out.println();
 	}
 
+	public static void testCipherBlocks(BlockCipher cipher, BlockCipherTestVector tv, int blockCount) {
+
+		var blocksize = cipher.getBlocksize();
+		var pt = new byte[blocksize * blockCount];
+		var ct = new byte[blocksize * blockCount];
+
+		// distinct blocks: each plaintext is the ciphertext of the block before, starting
+		// from the vector, and the expected ciphertexts come from single-block calls
+		cipher.init(tv.mk);
+		System.arraycopy(tv.pt, 0, pt, 0, blocksize);
+		for (var i = 0; i < blockCount; ++i) {
+			cipher.encryptBlock(pt, i * blocksize, ct, i * blocksize);
+
+			if (i + 1 < blockCount) {
+				System.arraycopy(ct, i * blocksize, pt, (i + 1) * blocksize, blocksize);
+			}
+		}
+
+		var isVectorPassed = Arrays.equals(tv.ct, Arrays.copyOf(ct, blocksize));
+
+		byte[] enc = new byte[pt.length];
+		byte[] dec = new byte[ct.length];
+
+		cipher.encryptBlocks(pt, 0, enc, 0, blockCount);
+		cipher.decryptBlocks(ct, 0, dec, 0, blockCount);
+
+		var isEncPassed = isVectorPassed && Arrays.equals(ct, enc);
+
+		System.out.println(cipher.getName() + " " + blockCount + "-block encryption: " + isEncPassed);
+		System.out.println(cipher.getName() + " " + blockCount + "-block decryption: " + Arrays.equals(pt, dec));
+		System.out.println();
+	}
+
+	public static void testCipherBuffers(BlockCipher cipher, BlockCipherTestVector tv, int blockCount) {
+
+		var blocksize = cipher.getBlocksize();
+		var length = blocksize * blockCount;
+
+		// heap buffers are encrypted into a second buffer
+		var heapSrc = ByteBuffer.allocate(length);
+		var heapDst = ByteBuffer.allocate(length);
+		for (var i = 0; i < blockCount; ++i) {
+			heapSrc.put(tv.pt);
+		}
+		heapSrc.flip();
+
+		cipher.init(tv.mk);
+		cipher.encryptBlocks(heapSrc, heapDst, blockCount);
+
+		var isHeapPassed = heapSrc.hasRemaining() == false && heapDst.hasRemaining() == false;
+		for (var i = 0; i < blockCount; ++i) {
+			isHeapPassed &= Arrays.equals(tv.ct, Arrays.copyOfRange(heapDst.array(), i * blocksize, (i + 1) * blocksize));
+		}
+
+		// direct buffers in little-endian order are decrypted in place
+		var direct = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+		for (var i = 0; i < blockCount; ++i) {
+			direct.put(tv.ct);
+		}
+		direct.flip();
+
+		cipher.decryptBlocks(direct, direct.duplicate(), blockCount);
+
+		var isDirectPassed = direct.hasRemaining() == false;
+		var block = new byte[blocksize];
+		for (var i = 0; i < blockCount; ++i) {
+			direct.get(i * blocksize, block);
+			isDirectPassed &= Arrays.equals(tv.pt, block);
+		}
+
+		System.out.println(cipher.getName() + " heap buffer encryption: " + isHeapPassed);
+		System.out.println(cipher.getName() + " direct buffer decryption: " + isDirectPassed);
+		System.out.println();
+	}
+
 }
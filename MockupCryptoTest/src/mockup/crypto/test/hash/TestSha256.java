@@ -0,0 +1,125 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.test.hash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import mockup.crypto.Hash;
+import mockup.crypto.hash.JceSha256;
+import mockup.crypto.hash.Sha256;
+import mockup.crypto.util.ByteArray;
+
+public class TestSha256 {
+
+	public static void run() {
+		run(new Sha256());
+		run(new JceSha256());
+	}
+
+	public static void run(Hash hash) {
+		testHash(hash, "", "e3b0c442 98fc1c14 9afbf4c8 996fb924 27ae41e4 649b934c a495991b 7852b855");
+		testHash(hash, "abc", "ba7816bf 8f01cfea 414140de 5dae2223 b00361a3 96177a9c b410ff61 f20015ad");
+		testHash(hash, "abcdbcdecdefdefgefghfghighijhijkijkljklmklmnlmnomnopnopq",
+				"248d6a61 d20638b8 e5c02693 0c3e6039 a33ce459 64ff2167 f6ecedd4 19db06c1");
+		testBuffers(hash);
+		testFileChannel(hash);
+		System.out.println();
+	}
+
+	public static void testHash(Hash hash, String msg, String digest) {
+		var expected = ByteArray.toByteArray(digest);
+		var actual = hash.doFinal(msg.getBytes(StandardCharsets.US_ASCII));
+
+		var isPassed = Arrays.equals(expected, actual);
+
+		System.out.println(hash.getName() + " (" + hash.getClass().getSimpleName() + ") \"" + msg + "\": " + isPassed);
+		if (isPassed == false) {
+			System.out.println("\texpected: " + ByteArray.toString(expected));
+			System.out.println("\t  actual: " + ByteArray.toString(actual));
+		}
+	}
+
+	public static void testFileChannel(Hash hash) {
+		var msg = new byte[1000];
+		for (var i = 0; i < msg.length; ++i) {
+			msg[i] = (byte) i;
+		}
+
+		var expected = hash.doFinal(Arrays.copyOfRange(msg, 10, msg.length));
+		byte[] actual = null;
+
+		try {
+			var path = Files.createTempFile("mockup", ".bin");
+
+			try (var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE)) {
+				channel.write(ByteBuffer.wrap(msg));
+
+				hash.update(channel, 10, msg.length - 10);
+				actual = hash.doFinal();
+			}
+
+		} catch (IOException e) {
+			System.out.println(hash.getName() + " (" + hash.getClass().getSimpleName() + ") FileChannel: " + e);
+		}
+
+		var isPassed = Arrays.equals(expected, actual);
+
+		System.out.println(hash.getName() + " (" + hash.getClass().getSimpleName() + ") FileChannel: " + isPassed);
+	}
+
+	public static void testBuffers(Hash hash) {
+		var msg = new byte[1000];
+		for (var i = 0; i < msg.length; ++i) {
+			msg[i] = (byte) i;
+		}
+
+		var expected = hash.doFinal(msg);
+
+		// split so that blocks straddle the heap and direct parts
+		var heap = ByteBuffer.wrap(msg, 0, 100).slice();
+		var direct = ByteBuffer.allocateDirect(msg.length - 100).order(ByteOrder.LITTLE_ENDIAN);
+		direct.put(msg, 100, msg.length - 100).flip();
+
+		hash.update(heap);
+		hash.update(direct);
+		var actual = hash.doFinal();
+
+		var isPassed = Arrays.equals(expected, actual) && direct.hasRemaining() == false;
+
+		System.out.println(hash.getName() + " (" + hash.getClass().getSimpleName() + ") ByteBuffer: " + isPassed);
+		if (isPassed == false) {
+			System.out.println("\texpected: " + ByteArray.toString(expected));
+			System.out.println("\t  actual: " + ByteArray.toString(actual));
+		}
+	}
+}
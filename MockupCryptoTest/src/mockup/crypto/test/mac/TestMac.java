@@ -0,0 +1,202 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.test.mac;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import mockup.crypto.BlockCipher;
+import mockup.crypto.BufferedBlockCipher.CipherMode;
+import mockup.crypto.Hash;
+import mockup.crypto.block_cipher.Aes;
+import mockup.crypto.block_cipher.AesKey;
+import mockup.crypto.block_cipher.AesTable;
+import mockup.crypto.hash.JceSha256;
+import mockup.crypto.hash.Sha256;
+import mockup.crypto.mac.CbcMac;
+import mockup.crypto.mac.Cmac;
+import mockup.crypto.mac.Hmac;
+import mockup.crypto.mode.CbcMode;
+import mockup.crypto.util.ByteArray;
+
+public class TestMac {
+
+	// RFC 4493
+	private static final String KEY = "2b7e1516 28aed2a6 abf71588 09cf4f3c";
+	private static final String MSG = "6bc1bee2 2e409f96 e93d7e11 7393172a ae2d8a57 1e03ac9c 9eb76fac 45af8e51 "
+			+ "30c81c46 a35ce411 e5fbc119 1a0a52ef f69f2445 df4f9b17 ad2b417b e66c3710";
+
+	public static void run() {
+		testCmac(new Aes(), 0, "bb1d6929 e9593728 7fa37d12 9b756746");
+		testCmac(new Aes(), 16, "070a16b4 6b4d4144 f79bdd9d d04a287c");
+		testCmac(new Aes(), 40, "dfa66747 de9ae630 30ca3261 1497c827");
+		testCmac(new AesTable(), 64, "51f0bebf 7e3b9d92 fc497417 79363cfe");
+
+		testStreaming();
+		testBatch();
+		testVerify();
+		testCbcMac();
+
+		// RFC 4231
+		var key = new byte[20];
+		Arrays.fill(key, (byte) 0x0b);
+		testHmac(new Sha256(), key, "Hi There",
+				"b0344c61 d8db3853 5ca8afce af0bf12b 881dc200 c9833da7 26e9376c 2e32cff7");
+		testHmac(new JceSha256(), "Jefe".getBytes(StandardCharsets.US_ASCII), "what do ya want for nothing?",
+				"5bdcc146 bf60754e 6a042426 089575c7 5a003f08 9d273983 9dec58b9 64ec3843");
+
+		key = new byte[131];
+		Arrays.fill(key, (byte) 0xaa);
+		testHmac(new Sha256(), key, "Test Using Larger Than Block-Size Key - Hash Key First",
+				"60e43159 1ee0b67f 0d8a26aa cbf5b77f 8e0bc621 3728c514 0546040f 0ee37f54");
+		System.out.println();
+	}
+
+	public static void testCmac(BlockCipher cipher, int length, String tag) {
+		var expected = ByteArray.toByteArray(tag);
+
+		var cmac = new Cmac();
+		cmac.init(cipher, ByteArray.toByteArray(KEY));
+		var actual = cmac.doFinal(Arrays.copyOf(ByteArray.toByteArray(MSG), length));
+
+		var isPassed = Arrays.equals(expected, actual);
+
+		System.out.println(cmac.getName() + " (" + length + " bytes): " + isPassed);
+		if (isPassed == false) {
+			System.out.println("\texpected: " + ByteArray.toString(expected));
+			System.out.println("\t  actual: " + ByteArray.toString(actual));
+		}
+	}
+
+	// every split of the message gives the tag of one call
+	public static void testStreaming() {
+		var msg = ByteArray.toByteArray(MSG);
+		var cmac = new Cmac();
+		cmac.init(new AesKey(ByteArray.toByteArray(KEY)));
+
+		var expected = cmac.doFinal(msg);
+
+		var isPassed = true;
+		for (var split = 0; split <= msg.length; ++split) {
+			cmac.update(msg, 0, split);
+			cmac.update(msg, split, msg.length - split);
+			isPassed &= Arrays.equals(expected, cmac.doFinal());
+		}
+
+		System.out.println(cmac.getName() + " streaming: " + isPassed);
+	}
+
+	// more messages than lanes, every length from empty to a few blocks
+	public static void testBatch() {
+		var msgs = new byte[50][];
+		for (var i = 0; i < msgs.length; ++i) {
+			msgs[i] = new byte[i];
+			Arrays.fill(msgs[i], (byte) (i * 5));
+		}
+
+		var cmac = new Cmac(12);
+		cmac.init(new Aes(), ByteArray.toByteArray(KEY));
+		var tags = cmac.doFinal(msgs);
+
+		var isPassed = true;
+		for (var i = 0; i < msgs.length; ++i) {
+			isPassed &= Arrays.equals(cmac.doFinal(msgs[i]), tags[i]);
+		}
+
+		var results = cmac.verify(msgs, tags);
+		for (var result : results) {
+			isPassed &= result;
+		}
+
+		System.out.println(cmac.getName() + " batch: " + isPassed);
+	}
+
+	public static void testVerify() {
+		var msg = ByteArray.toByteArray(MSG);
+		var cmac = new Cmac();
+		cmac.init(new Aes(), ByteArray.toByteArray(KEY));
+		var tag = cmac.doFinal(msg);
+
+		var isPassed = true;
+
+		cmac.update(msg);
+		isPassed &= cmac.verify(tag);
+
+		tag[15] ^= 1;
+		cmac.update(msg);
+		isPassed &= cmac.verify(tag) == false;
+
+		cmac.update(msg);
+		isPassed &= cmac.verify(Arrays.copyOf(tag, 8)) == false;
+
+		System.out.println(cmac.getName() + " verify: " + isPassed);
+	}
+
+	public static void testHmac(Hash hash, byte[] key, String msg, String tag) {
+		var expected = ByteArray.toByteArray(tag);
+
+		var hmac = new Hmac(hash);
+		hmac.init(key);
+		var actual = hmac.doFinal(msg.getBytes(StandardCharsets.US_ASCII));
+
+		// the key stays set for the next message
+		hmac.update(msg.getBytes(StandardCharsets.US_ASCII));
+		var isPassed = Arrays.equals(expected, actual) && hmac.verify(expected);
+
+		System.out.println(hmac.getName() + " (" + hash.getClass().getSimpleName() + ") \"" + msg + "\": " + isPassed);
+		if (isPassed == false) {
+			System.out.println("\texpected: " + ByteArray.toString(expected));
+			System.out.println("\t  actual: " + ByteArray.toString(actual));
+		}
+	}
+
+	// the last ciphertext block of CBC under a zero iv
+	public static void testCbcMac() {
+		var mk = ByteArray.toByteArray(KEY);
+		var msg = ByteArray.toByteArray(MSG);
+
+		var cbc = new CbcMode();
+		cbc.init(CipherMode.ENCRYPT, new Aes(), mk, new byte[16]);
+		var enc = cbc.doFinal(msg);
+
+		var mac = new CbcMac();
+		mac.init(new Aes(), mk);
+		var isPassed = Arrays.equals(Arrays.copyOfRange(enc, 48, 64), mac.doFinal(msg));
+
+		try {
+			mac.doFinal(Arrays.copyOf(msg, 40));
+			isPassed = false;
+
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		var tags = mac.doFinal(new byte[][] { msg, Arrays.copyOf(msg, 16) });
+		isPassed &= Arrays.equals(Arrays.copyOfRange(enc, 48, 64), tags[0]);
+		isPassed &= Arrays.equals(Arrays.copyOfRange(enc, 0, 16), tags[1]);
+
+		System.out.println(mac.getName() + ": " + isPassed);
+	}
+}
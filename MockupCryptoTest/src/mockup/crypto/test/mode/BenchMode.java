@@ -0,0 +1,131 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.test.mode;
+
+import mockup.crypto.BlockCipher;
+import mockup.crypto.BufferedBlockCipher;
+import mockup.crypto.BufferedBlockCipher.CipherMode;
+import mockup.crypto.block_cipher.Aes;
+import mockup.crypto.block_cipher.AesBitsliced;
+import mockup.crypto.block_cipher.AesKey;
+import mockup.crypto.block_cipher.AesTable;
+import mockup.crypto.block_cipher.JceAes;
+import mockup.crypto.mode.AesModes;
+import mockup.crypto.mode.BlockProcessor;
+import mockup.crypto.mode.CbcMode;
+import mockup.crypto.mode.CfbMode;
+import mockup.crypto.mode.CtrMode;
+import mockup.crypto.mode.EcbMode;
+
+/**
+ * Mode throughput, BufferedBlockCipher against AesModes
+ *
+ * Every mode first runs over each AES implementation, so the block loops
+ * shared by the engines see more than one receiver type. Each mode and
+ * direction is then timed over AES T-table twice: through the generic
+ * BufferedBlockCipher facade (before) and through the final processor from
+ * AesModes (after). TestMain runs one short round; main runs longer ones.
+ *
+ * @author ilwoong.jeong
+ *
+ */
+public class BenchMode {
+
+	private static final int BLOCKSIZE = 16;
+	private static final int MESSAGE_SIZE = 64 * 1024;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		bench(ROUNDS, 500);
+	}
+
+	public static void run() {
+		bench(1, 100);
+	}
+
+	private static void bench(int rounds, int millis) {
+		var mk = new byte[16];
+		var iv = new byte[16];
+		var msg = new byte[MESSAGE_SIZE];
+		var out = new byte[MESSAGE_SIZE];
+		var key = new AesKey(mk);
+
+		pollute(mk, iv, msg, out);
+
+		for (var round = 0; round < rounds; ++round) {
+			System.out.println("BenchMode round " + round);
+			compare(new EcbMode(), CipherMode.ENCRYPT, AesModes.ecbEncryptor(key), mk, iv, msg, out, millis);
+			compare(new EcbMode(), CipherMode.DECRYPT, AesModes.ecbDecryptor(key), mk, iv, msg, out, millis);
+			compare(new CbcMode(), CipherMode.ENCRYPT, AesModes.cbcEncryptor(key, iv), mk, iv, msg, out, millis);
+			compare(new CbcMode(), CipherMode.DECRYPT, AesModes.cbcDecryptor(key, iv), mk, iv, msg, out, millis);
+			compare(new CfbMode(), CipherMode.ENCRYPT, AesModes.cfbEncryptor(key, iv), mk, iv, msg, out, millis);
+			compare(new CfbMode(), CipherMode.DECRYPT, AesModes.cfbDecryptor(key, iv), mk, iv, msg, out, millis);
+			compare(new CtrMode(), CipherMode.ENCRYPT, AesModes.ctr(key, iv), mk, iv, msg, out, millis);
+		}
+	}
+
+	private static void pollute(byte[] mk, byte[] iv, byte[] msg, byte[] out) {
+		var ciphers = new BlockCipher[] { new Aes(), new AesBitsliced(), new JceAes(), new AesTable() };
+		var modes = new BufferedBlockCipher[] { new EcbMode(), new CbcMode(), new CfbMode(), new CtrMode() };
+
+		for (var i = 0; i < 200; ++i) {
+			for (var cipher : ciphers) {
+				for (var mode : modes) {
+					mode.init(i % 2 == 0 ? CipherMode.ENCRYPT : CipherMode.DECRYPT, cipher, mk, iv);
+					mode.update(msg, 0, 4096, out, 0);
+				}
+			}
+		}
+	}
+
+	private static void compare(BufferedBlockCipher bbc, CipherMode mode, BlockProcessor processor, byte[] mk,
+			byte[] iv, byte[] msg, byte[] out, int millis) {
+
+		bbc.init(mode, new AesTable(), mk, iv);
+
+		var count = msg.length / BLOCKSIZE;
+		var before = measure(() -> bbc.update(msg, 0, msg.length, out, 0), millis);
+		var after = measure(() -> processor.process(msg, 0, out, 0, count), millis);
+		var gain = (after / before - 1) * 100;
+
+		System.out.println(String.format("  %-16s %-8s facade %7.1f MB/s, processor %7.1f MB/s (%+.1f%%)",
+				bbc.getName(), mode, before, after, gain));
+	}
+
+	private static double measure(Runnable task, int millis) {
+		var limit = millis * 1_000_000L;
+		var count = 0;
+		var start = System.nanoTime();
+		var elapsed = 0L;
+
+		while (elapsed < limit) {
+			task.run();
+			count += 1;
+			elapsed = System.nanoTime() - start;
+		}
+
+		return (double) count * MESSAGE_SIZE * 1e3 / elapsed;
+	}
+}
@@ -24,22 +24,42 @@
 
 package mockup.crypto.test.mode;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import mockup.crypto.BufferedBlockCipher;
 import mockup.crypto.BufferedBlockCipher.CipherMode;
 import mockup.crypto.block_cipher.Aes;
+import mockup.crypto.block_cipher.AesKey;
+import mockup.crypto.hash.Sha256;
+import mockup.crypto.mac.Hmac;
+import mockup.crypto.mode.AesModes;
+import mockup.crypto.mode.BlockProcessor;
+import mockup.crypto.mode.CbcHmacMode;
 import mockup.crypto.mode.CbcMode;
 import mockup.crypto.mode.CfbMode;
 import mockup.crypto.mode.CtrMode;
 import mockup.crypto.mode.EcbMode;
+import mockup.crypto.mode.GcmMode;
+import mockup.crypto.mode.GcmMode.Multiplier;
+import mockup.crypto.mode.InvalidTagException;
+import mockup.crypto.mode.MultiLaneCbc;
 import mockup.crypto.mode.OfbMode;
+import mockup.crypto.mode.XtsMode;
 import mockup.crypto.padding.Pkcs7Padding;
 import mockup.crypto.util.ByteArray;
 
 public class TestMode {
 	public static void run() {
 		testAes128();
+		testGcm(Multiplier.TABLE);
+		testGcm(Multiplier.MULTIPLY_HIGH);
+		testXts();
 	}
 
 	public static void testMode(BufferedBlockCipher bbc, byte[] mk, byte[] iv, byte[] msg) {
@@ -61,6 +81,572 @@ public class TestMode {
 		}
 	}
 
+	public static void testExpandedKey(BufferedBlockCipher bbc, byte[] mk, byte[] iv, byte[] msg) {
+		bbc.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		byte[] expected = bbc.doFinal(msg);
+
+		var key = new AesKey(mk);
+
+		bbc.init(CipherMode.ENCRYPT, key, iv);
+		byte[] enc = bbc.doFinal(msg);
+
+		bbc.init(CipherMode.DECRYPT, key, iv);
+		byte[] dec = bbc.doFinal(enc);
+
+		var isPassed = Arrays.equals(expected, enc) && Arrays.equals(msg, dec);
+		System.out.println(bbc.getName() + " with expanded key: " + isPassed);
+	}
+
+	public static void testByteBuffer(BufferedBlockCipher bbc, byte[] mk, byte[] iv, byte[] msg) {
+		bbc.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		bbc.setPadding(new Pkcs7Padding(16));
+		byte[] expected = bbc.doFinal(msg);
+
+		// heap source, direct destination
+		var src = ByteBuffer.wrap(msg);
+		var enc = ByteBuffer.allocateDirect(expected.length);
+
+		bbc.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		bbc.setPadding(new Pkcs7Padding(16));
+		bbc.update(src.slice().limit(20), enc);
+		bbc.doFinal(src.position(20), enc);
+
+		// direct source, heap destination
+		var dec = ByteBuffer.allocate(msg.length);
+
+		bbc.init(CipherMode.DECRYPT, new Aes(), mk, iv);
+		bbc.setPadding(new Pkcs7Padding(16));
+		bbc.doFinal(enc.flip(), dec);
+
+		var actual = new byte[expected.length];
+		enc.get(0, actual);
+
+		var isPassed = Arrays.equals(expected, actual) && Arrays.equals(msg, dec.array());
+		isPassed &= dec.hasRemaining() == false;
+		System.out.println(bbc.getName() + " with ByteBuffer: " + isPassed);
+	}
+
+	public static void testInPlace(BufferedBlockCipher bbc, byte[] mk, byte[] iv, byte[] msg) {
+		var isPadded = bbc instanceof EcbMode || bbc instanceof CbcMode;
+
+		bbc.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		if (isPadded) {
+			bbc.setPadding(new Pkcs7Padding(16));
+		}
+		byte[] expected = bbc.doFinal(msg);
+
+		// pieces that leave partial blocks behind, encrypted and decrypted within one array
+		var data = Arrays.copyOf(msg, bbc.getOutputSize(msg.length));
+		var isPassed = true;
+
+		for (var mode : CipherMode.values()) {
+			var length = mode == CipherMode.ENCRYPT ? msg.length : expected.length;
+			var written = 0;
+
+			bbc.init(mode, new Aes(), mk, iv);
+			if (isPadded) {
+				bbc.setPadding(new Pkcs7Padding(16));
+			}
+
+			for (var pos = 0; pos < length; pos += 7) {
+				written += bbc.update(data, pos, Math.min(7, length - pos), data, written);
+			}
+			written += bbc.doFinal(data, written);
+
+			var result = Arrays.copyOf(data, written);
+			isPassed &= Arrays.equals(mode == CipherMode.ENCRYPT ? expected : msg, result);
+		}
+
+		System.out.println(bbc.getName() + " in place: " + isPassed);
+	}
+
+	public static void testReinit(BufferedBlockCipher bbc, byte[] mk, byte[] iv, byte[] msg) {
+		var other = iv.clone();
+		other[0] ^= 1;
+
+		bbc.init(CipherMode.ENCRYPT, new Aes(), mk, other);
+		byte[] expected = bbc.doFinal(msg);
+
+		// the first message is left unfinished, reinit drops it
+		bbc.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		bbc.update(Arrays.copyOf(msg, 21));
+
+		bbc.reinit(other);
+		var isPassed = Arrays.equals(expected, bbc.doFinal(msg));
+
+		bbc.reinit(CipherMode.DECRYPT, other);
+		isPassed &= Arrays.equals(msg, bbc.doFinal(expected));
+
+		System.out.println(bbc.getName() + " reinit: " + isPassed);
+	}
+
+	public static void testFileChannel(BufferedBlockCipher bbc, byte[] mk, byte[] iv, byte[] msg) {
+		bbc.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		byte[] expected = bbc.doFinal(msg);
+
+		var isPassed = false;
+		try {
+			var path = Files.createTempFile("mockup", ".bin");
+
+			try (var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE)) {
+				// the message follows a 7-byte header and is encrypted in place
+				channel.write(ByteBuffer.wrap(new byte[7]));
+				channel.write(ByteBuffer.wrap(msg));
+
+				bbc.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+				var written = bbc.update(channel, 7, msg.length);
+
+				var enc = ByteBuffer.allocate((int) written);
+				channel.read(enc, 7);
+
+				isPassed = Arrays.equals(Arrays.copyOf(expected, (int) written), enc.array());
+			}
+
+		} catch (IOException e) {
+			System.out.println(bbc.getName() + " with FileChannel: " + e);
+		}
+
+		System.out.println(bbc.getName() + " with FileChannel: " + isPassed);
+	}
+
+	public static void testParallel(BufferedBlockCipher bbc, byte[] mk, byte[] iv) {
+		// a few chunks past the threshold, with a counter that carries into upper bytes
+		var msg = new byte[(3 << 20) + 5 * 16];
+		for (var i = 0; i < msg.length; ++i) {
+			msg[i] = (byte) (i * 7);
+		}
+
+		var counter = iv.clone();
+		Arrays.fill(counter, 13, 16, (byte) 0xff);
+
+		bbc.init(CipherMode.ENCRYPT, new Aes(), mk, counter);
+		byte[] expected = bbc.doFinal(msg);
+
+		var key = new AesKey(mk);
+
+		bbc.init(CipherMode.ENCRYPT, key, counter);
+		bbc.setParallelism(ForkJoinPool.commonPool(), BufferedBlockCipher.DEFAULT_PARALLEL_THRESHOLD);
+		byte[] head = bbc.update(Arrays.copyOf(msg, 2 << 20));
+		byte[] tail = bbc.doFinal(Arrays.copyOfRange(msg, 2 << 20, msg.length));
+		byte[] enc = ByteArray.merge(head, tail);
+
+		bbc.init(CipherMode.DECRYPT, key, counter);
+		byte[] dec = bbc.doFinal(enc);
+
+		// and once more in place
+		var inPlace = ByteBuffer.wrap(enc.clone());
+		bbc.init(CipherMode.DECRYPT, key, counter);
+		bbc.doFinal(inPlace.duplicate(), inPlace.duplicate());
+
+		var isPassed = Arrays.equals(expected, enc) && Arrays.equals(msg, dec);
+		isPassed &= Arrays.equals(msg, inPlace.array());
+		System.out.println(bbc.getName() + " in parallel: " + isPassed);
+	}
+
+	public static void testStreaming(BufferedBlockCipher bbc, byte[] mk, byte[] iv, byte[] msg) {
+		bbc.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		byte[] expected = bbc.doFinal(msg);
+
+		// every piece comes back whole, even when it ends inside a block
+		int[] pieces = { 1, 5, 17, 3, 16, 12 };
+		var isPassed = true;
+
+		for (var mode : CipherMode.values()) {
+			var src = mode == CipherMode.ENCRYPT ? msg : expected;
+			var dst = new byte[src.length];
+			var pos = 0;
+
+			bbc.init(mode, new Aes(), mk, iv);
+			for (var idx = 0; pos < src.length; ++idx) {
+				var length = Math.min(pieces[idx % pieces.length], src.length - pos);
+				var out = bbc.update(Arrays.copyOfRange(src, pos, pos + length));
+
+				isPassed &= out != null && out.length == length;
+				System.arraycopy(out, 0, dst, pos, length);
+				pos += length;
+			}
+
+			isPassed &= bbc.doFinal() == null;
+			isPassed &= Arrays.equals(mode == CipherMode.ENCRYPT ? expected : msg, dst);
+		}
+
+		System.out.println(bbc.getName() + " streaming: " + isPassed);
+	}
+
+	public static void testPrefetch(byte[] mk, byte[] iv) {
+		var msg = new byte[10000];
+		for (var i = 0; i < msg.length; ++i) {
+			msg[i] = (byte) (i * 5);
+		}
+
+		var ofb = new OfbMode();
+		ofb.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		byte[] expected = ofb.doFinal(msg);
+
+		// a shallow ring, so the caller also runs ahead of the producer
+		var isPassed = true;
+		for (var depth : new int[] { 2, 64 }) {
+			ofb.init(CipherMode.ENCRYPT, new AesKey(mk), iv);
+			ofb.setPrefetch(depth);
+
+			// twice, to cover the rewind after doFinal
+			for (var round = 0; round < 2; ++round) {
+				var enc = new byte[msg.length];
+				for (var pos = 0; pos < msg.length; pos += 1000) {
+					ofb.update(msg, pos, 1000, enc, pos);
+				}
+				ofb.doFinal(enc, msg.length);
+				isPassed &= Arrays.equals(expected, enc);
+			}
+
+			// switched off halfway, the stream goes on inline
+			var enc = new byte[msg.length];
+			ofb.update(msg, 0, 5003, enc, 0);
+			ofb.setPrefetch(0);
+			ofb.update(msg, 5003, msg.length - 5003, enc, 5003);
+			ofb.doFinal(enc, msg.length);
+			isPassed &= Arrays.equals(expected, enc);
+		}
+
+		// initialized again, the running producer moves onto the new cipher
+		ofb.setPrefetch(64);
+		ofb.init(CipherMode.ENCRYPT, new AesKey(mk), iv);
+		isPassed &= Arrays.equals(expected, ofb.doFinal(msg));
+
+		// closed, the mode stays usable inline
+		ofb.close();
+		isPassed &= Arrays.equals(expected, ofb.doFinal(msg));
+
+		System.out.println(ofb.getName() + " with prefetch: " + isPassed);
+	}
+
+	public static void testMultiLane(byte[] mk, byte[] iv) {
+		// more messages than lanes, of uneven lengths, one of them empty
+		var msgs = new byte[11][];
+		var ivs = new byte[msgs.length][];
+		for (var i = 0; i < msgs.length; ++i) {
+			msgs[i] = new byte[(i * 37) % 100];
+			Arrays.fill(msgs[i], (byte) i);
+			ivs[i] = iv.clone();
+			ivs[i][0] = (byte) i;
+		}
+
+		var lanes = new MultiLaneCbc(4);
+		lanes.init(new Aes(), mk);
+		lanes.setPadding(new Pkcs7Padding(16));
+		var encs = lanes.encrypt(msgs, ivs);
+
+		var isPassed = true;
+		var cbc = new CbcMode();
+		for (var i = 0; i < msgs.length; ++i) {
+			cbc.init(CipherMode.ENCRYPT, new Aes(), mk, ivs[i]);
+			cbc.setPadding(new Pkcs7Padding(16));
+			isPassed &= Arrays.equals(cbc.doFinal(msgs[i]), encs[i]);
+		}
+
+		System.out.println(lanes.getName() + ": " + isPassed);
+	}
+
+	// against CBC and HMAC run one after the other
+	public static void testCbcHmac(byte[] mk, byte[] iv, int length) {
+		var msg = new byte[length];
+		for (var i = 0; i < msg.length; ++i) {
+			msg[i] = (byte) (i * 11);
+		}
+
+		var macKey = Arrays.copyOf(mk, 32);
+
+		var cbc = new CbcMode();
+		cbc.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		cbc.setPadding(new Pkcs7Padding(16));
+		var ciphertext = cbc.doFinal(msg);
+
+		var hmac = new Hmac(new Sha256());
+		hmac.init(macKey);
+		var expected = ByteArray.merge(ciphertext, hmac.doFinal(ciphertext));
+
+		var bbc = new CbcHmacMode();
+		bbc.init(CipherMode.ENCRYPT, new Aes(), mk, macKey, iv);
+		bbc.setPadding(new Pkcs7Padding(16));
+		var enc = bbc.doFinal(msg);
+
+		// nothing comes out of update, and splits around the tag do not matter
+		var isPassed = Arrays.equals(expected, enc);
+		for (var split : new int[] { 0, 1, enc.length - 40, enc.length - 32, enc.length - 1, enc.length }) {
+			bbc.reinit(CipherMode.DECRYPT, iv);
+			var dec = new byte[bbc.getOutputSize(enc.length)];
+
+			var written = bbc.update(enc, 0, split, dec, 0);
+			written += bbc.update(enc, split, enc.length - split, dec, written);
+			written += bbc.doFinal(dec, written);
+
+			isPassed &= bbc.update(enc, 0, 0, dec, 0) == 0 && Arrays.equals(msg, Arrays.copyOf(dec, written));
+		}
+
+		// whole messages are verified first and decrypted straight into the output, here in place
+		bbc.reinit(CipherMode.DECRYPT, iv);
+		isPassed &= Arrays.equals(msg, bbc.doFinal(enc));
+
+		var inPlace = enc.clone();
+		bbc.reinit(CipherMode.DECRYPT, iv);
+		var written = bbc.decrypt(inPlace, 0, inPlace.length, inPlace, 0);
+		isPassed &= Arrays.equals(msg, Arrays.copyOf(inPlace, written));
+
+		// streamed through direct buffers, the plaintext goes from the held buffer to dst
+		var src = ByteBuffer.allocateDirect(enc.length).put(enc).flip();
+		var dst = ByteBuffer.allocateDirect(enc.length);
+		bbc.reinit(CipherMode.DECRYPT, iv);
+		written = bbc.doFinal(src, dst);
+		var dec = new byte[written];
+		dst.flip().get(dec);
+		isPassed &= Arrays.equals(msg, dec);
+
+		for (var cut : new int[] { 1, 17, enc.length }) {
+			try {
+				bbc.reinit(CipherMode.DECRYPT, iv);
+				bbc.doFinal(Arrays.copyOf(enc, enc.length - cut));
+				isPassed = false;
+
+			} catch (InvalidTagException e) {
+				// expected
+			}
+		}
+
+		for (var flip : new int[] { 0, enc.length - 33, enc.length - 1 }) {
+			var tampered = enc.clone();
+			tampered[flip] ^= 1;
+
+			try {
+				bbc.reinit(CipherMode.DECRYPT, iv);
+				bbc.doFinal(tampered);
+				isPassed = false;
+
+			} catch (InvalidTagException e) {
+				// expected
+			}
+		}
+
+		System.out.println(bbc.getName() + " (" + length + " bytes): " + isPassed);
+	}
+
+	public static void testAesModes(byte[] mk, byte[] iv) {
+		var key = new AesKey(mk);
+		var msg = new byte[20 * 16];
+		for (var i = 0; i < msg.length; ++i) {
+			msg[i] = (byte) (i * 7);
+		}
+
+		var isPassed = true;
+		isPassed &= testAesModes(new EcbMode(), AesModes.ecbEncryptor(key), AesModes.ecbDecryptor(key), mk, iv, msg);
+		isPassed &= testAesModes(new CbcMode(), AesModes.cbcEncryptor(key, iv), AesModes.cbcDecryptor(key, iv), mk,
+				iv, msg);
+		isPassed &= testAesModes(new CfbMode(), AesModes.cfbEncryptor(key, iv), AesModes.cfbDecryptor(key, iv), mk,
+				iv, msg);
+		isPassed &= testAesModes(new CtrMode(), AesModes.ctr(key, iv), AesModes.ctr(key, iv), mk, iv, msg);
+
+		System.out.println("AesModes: " + isPassed);
+	}
+
+	// the processors against the generic modes over a cipher that is not an AesTable
+	private static boolean testAesModes(BufferedBlockCipher bbc, BlockProcessor encryptor, BlockProcessor decryptor,
+			byte[] mk, byte[] iv, byte[] msg) {
+		bbc.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		var expected = bbc.doFinal(msg);
+
+		// two calls, so the chaining state has to carry over
+		var enc = new byte[msg.length];
+		encryptor.process(msg, 0, enc, 0, 3);
+		encryptor.process(msg, 48, enc, 48, msg.length / 16 - 3);
+
+		// in place
+		var dec = enc.clone();
+		decryptor.process(dec, 0, dec, 0, 5);
+		decryptor.process(dec, 80, dec, 80, msg.length / 16 - 5);
+
+		return Arrays.equals(expected, enc) && Arrays.equals(msg, dec);
+	}
+
+	public static void testRandomAccess(CtrMode ctr, byte[] mk, byte[] iv) {
+		var msg = new byte[1000];
+		for (var i = 0; i < msg.length; ++i) {
+			msg[i] = (byte) (i * 3);
+		}
+
+		ctr.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		byte[] enc = ctr.doFinal(msg);
+
+		// ranges that start and end mid-block, in no particular order
+		int[][] ranges = { { 517, 100 }, { 0, 1 }, { 15, 2 }, { 32, 16 }, { 3, 997 }, { 999, 1 } };
+
+		var isPassed = true;
+		ctr.init(CipherMode.DECRYPT, new Aes(), mk, iv);
+		for (var range : ranges) {
+			var dec = new byte[range[1]];
+			ctr.process(range[0], enc, range[0], dec, 0, range[1]);
+			isPassed &= Arrays.equals(Arrays.copyOfRange(msg, range[0], range[0] + range[1]), dec);
+		}
+
+		System.out.println(ctr.getName() + " random access: " + isPassed);
+	}
+
+	public static void testCounterWidth(int width, byte[] mk, byte[] iv) {
+		// the low counter bytes are about to wrap
+		var counter = iv.clone();
+		Arrays.fill(counter, 8, 16, (byte) 0xff);
+
+		var blocks = 3;
+		var msg = new byte[blocks * 16];
+
+		var ctr = new CtrMode(width);
+		ctr.init(CipherMode.ENCRYPT, new Aes(), mk, counter);
+		byte[] enc = ctr.doFinal(msg);
+
+		// expected keystream, stepping only the low width bits of the counter block
+		var aes = new Aes();
+		aes.init(mk);
+
+		var expected = new byte[msg.length];
+		var block = counter.clone();
+		for (var i = 0; i < blocks; ++i) {
+			aes.encryptBlock(block, 0, expected, i * 16);
+
+			for (var idx = 15; idx >= 16 - width / 8 && ++block[idx] == 0; --idx) {
+			}
+		}
+
+		System.out.println(ctr.getName() + " with " + width + "-bit counter: " + Arrays.equals(expected, enc));
+	}
+
+	// test cases 2 to 4 of McGrew and Viega, "The Galois/Counter Mode of Operation"
+	public static void testGcm(Multiplier multiplier) {
+		var zero = new byte[16];
+		var isPassed = testGcm(multiplier, zero, new byte[12], zero, new byte[0],
+				"0388dace60b6a392f328c2b971b2fe78" + "ab6e47d42cec13bdf53a67b21257bddf");
+
+		var mk = ByteArray.toByteArray("feffe9928665731c6d6a8f9467308308");
+		var iv = ByteArray.toByteArray("cafebabefacedbaddecaf888");
+		var msg = ByteArray.toByteArray("d9313225f88406e5a55909c5aff5269a86a7a9531534f7da2e4c303d8a318a72"
+				+ "1c3c0c95956809532fcf0e2449a6b525b16aedf5aa0de657ba637b391aafd255");
+		var enc = "42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e"
+				+ "21d514b25466931c7d8f6a5aac84aa051ba30b396a0aac973d58e091473f5985";
+
+		isPassed &= testGcm(multiplier, mk, iv, msg, new byte[0], enc + "4d5c2af327cd64a62cf35abd2ba6fab4");
+
+		var aad = ByteArray.toByteArray("feedfacedeadbeeffeedfacedeadbeefabaddad2");
+		isPassed &= testGcm(multiplier, mk, iv, Arrays.copyOf(msg, 60), aad,
+				enc.substring(0, 120) + "5bc94fbc3221a5db94fae95ae7121a47");
+
+		System.out.println("GCM with " + multiplier + " multiplier: " + isPassed);
+	}
+
+	private static boolean testGcm(Multiplier multiplier, byte[] mk, byte[] iv, byte[] msg, byte[] aad,
+			String expected) {
+		var gcm = new GcmMode(multiplier, 16);
+		gcm.init(CipherMode.ENCRYPT, new Aes(), mk, iv);
+		gcm.updateAAD(aad);
+		var enc = gcm.doFinal(msg);
+
+		var isPassed = expected.equals(ByteArray.toString(enc).replace(" ", ""));
+
+		// decryption fed in odd sized pieces, so the tag straddles update calls
+		gcm.init(CipherMode.DECRYPT, new Aes(), mk, iv);
+		gcm.updateAAD(aad, 0, aad.length / 2);
+		gcm.updateAAD(aad, aad.length / 2, aad.length - aad.length / 2);
+
+		var dec = new java.io.ByteArrayOutputStream();
+		for (var pos = 0; pos < enc.length; pos += 7) {
+			var out = gcm.update(Arrays.copyOfRange(enc, pos, Math.min(pos + 7, enc.length)));
+			if (out != null) {
+				dec.writeBytes(out);
+			}
+		}
+		var tail = gcm.doFinal();
+		if (tail != null) {
+			dec.writeBytes(tail);
+		}
+		isPassed &= Arrays.equals(msg, dec.toByteArray());
+
+		// a flipped tag bit must be rejected
+		enc[enc.length - 1] ^= 1;
+		gcm.init(CipherMode.DECRYPT, new Aes(), mk, iv);
+		gcm.updateAAD(aad);
+		try {
+			gcm.doFinal(enc);
+			isPassed = false;
+
+		} catch (InvalidTagException e) {
+		}
+
+		return isPassed;
+	}
+
+	public static void testXts() {
+		// IEEE 1619 vector 2
+		var mk = ByteArray.toByteArray("11111111111111111111111111111111" + "22222222222222222222222222222222");
+		var xts = new XtsMode(mk);
+		var msg = new byte[32];
+		Arrays.fill(msg, (byte) 0x44);
+
+		var enc = new byte[msg.length];
+		xts.encryptSector(0x3333333333L, msg, 0, enc, 0, msg.length);
+		var isPassed = "c454185e6a16936e39334038acef838bfb186fff7480adc4289382ecd6d394f0"
+				.equals(ByteArray.toString(enc).replace(" ", ""));
+
+		// a 17-byte sector ends with ciphertext stealing
+		mk = ByteArray.toByteArray("fffefdfcfbfaf9f8f7f6f5f4f3f2f1f0" + "bfbebdbcbbbab9b8b7b6b5b4b3b2b1b0");
+		xts = new XtsMode(mk);
+		msg = new byte[17];
+		for (var i = 0; i < msg.length; ++i) {
+			msg[i] = (byte) i;
+		}
+
+		enc = msg.clone();
+		xts.encryptSector(0x9a78563412L, enc, 0, enc, 0, enc.length);
+		isPassed &= "641610679dcbf92e505c41333fb06c2a95".equals(ByteArray.toString(enc).replace(" ", ""));
+
+		xts.decryptSector(0x9a78563412L, enc, 0, enc, 0, enc.length);
+		isPassed &= Arrays.equals(msg, enc);
+
+		// sectors in bulk across the pool match sectors one at a time
+		var sectorSize = 4096;
+		var sectors = new byte[sectorSize * 64];
+		for (var i = 0; i < sectors.length; ++i) {
+			sectors[i] = (byte) (i * 7);
+		}
+
+		var expected = new byte[sectors.length];
+		for (var i = 0; i < 64; ++i) {
+			xts.encryptSector(100 + i, sectors, i * sectorSize, expected, i * sectorSize, sectorSize);
+		}
+
+		xts.setParallelism(ForkJoinPool.commonPool(), 1 << 16);
+		enc = sectors.clone();
+		xts.encryptSectors(100, sectorSize, enc, 0, enc, 0, enc.length);
+		isPassed &= Arrays.equals(expected, enc);
+
+		xts.decryptSectors(100, sectorSize, enc, 0, enc, 0, enc.length);
+		isPassed &= Arrays.equals(sectors, enc);
+
+		// equal data and tweak keys, as bytes, as one object and as two objects
+		var key = new AesKey(new byte[16]);
+		isPassed &= isRejected(() -> new XtsMode(new byte[32]));
+		isPassed &= isRejected(() -> new XtsMode(key, key));
+		isPassed &= isRejected(() -> new XtsMode(key, new AesKey(new byte[16])));
+
+		System.out.println(xts.getName() + ": " + isPassed);
+	}
+
+	private static boolean isRejected(Runnable task) {
+		try {
+			task.run();
+			return false;
+
+		} catch (IllegalArgumentException e) {
+			return true;
+		}
+	}
+
 	public static void testAes128() {
 
 		byte[] mk = new byte[16];
@@ -81,5 +667,45 @@ public class TestMode {
 		testMode(new CfbMode(), mk, iv, msg);
 		testMode(new OfbMode(), mk, iv, msg);
 		testMode(new CtrMode(), mk, iv, msg);
+
+		testExpandedKey(new CfbMode(), mk, iv, msg);
+		testExpandedKey(new CtrMode(), mk, iv, msg);
+
+		testByteBuffer(new CbcMode(), mk, iv, msg);
+
+		testReinit(new CbcMode(), mk, iv, Arrays.copyOf(msg, 48));
+		testReinit(new CfbMode(), mk, iv, msg);
+		testReinit(new OfbMode(), mk, iv, msg);
+		testReinit(new CtrMode(), mk, iv, msg);
+		testReinit(new GcmMode(), mk, iv, msg);
+
+		testInPlace(new CbcMode(), mk, iv, msg);
+		testInPlace(new CfbMode(), mk, iv, msg);
+		testInPlace(new GcmMode(), mk, iv, msg);
+
+		testFileChannel(new EcbMode(), mk, iv, msg);
+		testFileChannel(new CtrMode(), mk, iv, msg);
+
+		testParallel(new EcbMode(), mk, iv);
+		testParallel(new CtrMode(), mk, iv);
+		testParallel(new CbcMode(), mk, iv);
+		testParallel(new CfbMode(), mk, iv);
+
+		testStreaming(new CfbMode(), mk, iv, msg);
+		testStreaming(new OfbMode(), mk, iv, msg);
+		testStreaming(new CtrMode(), mk, iv, msg);
+
+		testPrefetch(mk, iv);
+		testMultiLane(mk, iv);
+		testAesModes(mk, iv);
+
+		testCbcHmac(mk, iv, msg.length);
+		testCbcHmac(mk, iv, 10000);
+
+		testRandomAccess(new CtrMode(), mk, iv);
+
+		testCounterWidth(128, mk, iv);
+		testCounterWidth(64, mk, iv);
+		testCounterWidth(32, mk, iv);
 	}
 }
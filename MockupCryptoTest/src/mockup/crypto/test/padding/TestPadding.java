@@ -0,0 +1,128 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2020 Ilwoong Jeong (https://github.com/ilwoong)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package mockup.crypto.test.padding;
+
+import java.util.Arrays;
+
+import mockup.crypto.BufferedBlockCipher.CipherMode;
+import mockup.crypto.Padding;
+import mockup.crypto.block_cipher.Aes;
+import mockup.crypto.mode.CbcMode;
+import mockup.crypto.padding.AnsiX923Padding;
+import mockup.crypto.padding.InvalidPaddingException;
+import mockup.crypto.padding.Iso7816Padding;
+import mockup.crypto.padding.Pkcs7Padding;
+import mockup.crypto.padding.ZeroPadding;
+import mockup.crypto.util.ByteArray;
+
+public class TestPadding {
+
+	public static void run() {
+		testPadding(new Pkcs7Padding(16), "0b0c0d03 0303", "0b0c0d03 0302", "0b0c0d03 0311");
+		testPadding(new AnsiX923Padding(16), "0b0c0d00 0003", "0b0c0d00 0103", "0b0c0d00 0000");
+		testPadding(new Iso7816Padding(16), "0b0c0d80 0000", "0b0c0d81 0000", "00000000 0000");
+		testPadding(new ZeroPadding(16), "0b0c0d00 0000", null, null);
+		testZeroPadding();
+		System.out.println();
+	}
+
+	// expected ends the padding of 13 bytes of data, the bad ones are expected with one change
+	public static void testPadding(Padding padding, String expected, String bad, String worse) {
+		var isPassed = true;
+
+		// every length over two blocks, in place and allocating
+		var data = new byte[48];
+		for (var i = 0; i < data.length; ++i) {
+			data[i] = (byte) (i + 1);
+		}
+
+		for (var length = 0; length <= 32; ++length) {
+			var block = Arrays.copyOf(data, 48);
+			var padded = padding.pad(block, 0, length);
+
+			isPassed &= padded % 16 == 0 && padded >= length && padded <= length + 16;
+			isPassed &= padded == padding.getPaddedLength(length);
+			isPassed &= padding.tryUnpad(block, 0, padded) == length;
+			isPassed &= Arrays.equals(Arrays.copyOf(block, padded), padding.pad(data, length));
+			isPassed &= Arrays.equals(Arrays.copyOf(data, length), padding.unpad(Arrays.copyOf(block, padded)));
+		}
+
+		var block = Arrays.copyOf(data, 16);
+		padding.pad(block, 0, 13);
+		isPassed &= Arrays.equals(ByteArray.toByteArray(expected), Arrays.copyOfRange(block, 10, 16));
+
+		if (bad != null) {
+			isPassed &= testInvalid(padding, bad);
+		}
+
+		if (worse != null) {
+			isPassed &= testInvalid(padding, worse);
+		}
+
+		System.out.println(padding.getName() + ": " + isPassed);
+	}
+
+	// aligned and empty input get no padding block, also through a cipher
+	public static void testZeroPadding() {
+		var padding = new ZeroPadding(16);
+		var isPassed = padding.getPaddedLength(0) == 0 && padding.getPaddedLength(32) == 32
+				&& padding.getPaddedLength(33) == 48;
+
+		for (var length : new int[] { 0, 13, 32 }) {
+			var msg = new byte[length];
+			Arrays.fill(msg, (byte) 0x5a);
+
+			var cbc = new CbcMode();
+			cbc.init(CipherMode.ENCRYPT, new Aes(), new byte[16], new byte[16]);
+			cbc.setPadding(padding);
+			var enc = cbc.doFinal(msg);
+
+			cbc.reinit(CipherMode.DECRYPT, new byte[16]);
+			var dec = cbc.doFinal(enc);
+
+			isPassed &= enc.length == padding.getPaddedLength(length) && Arrays.equals(msg, dec);
+		}
+
+		System.out.println(padding.getName() + " aligned: " + isPassed);
+	}
+
+	private static boolean testInvalid(Padding padding, String tail) {
+		var block = new byte[16];
+		var bytes = ByteArray.toByteArray(tail);
+		System.arraycopy(bytes, 0, block, 16 - bytes.length, bytes.length);
+
+		var isPassed = padding.tryUnpad(block, 0, 16) == Padding.INVALID;
+
+		try {
+			padding.unpad(block, 0, 16);
+			isPassed = false;
+
+		} catch (InvalidPaddingException e) {
+			isPassed &= e.getStackTrace().length == 0;
+		}
+
+		return isPassed;
+	}
+}